@@ -0,0 +1,2572 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+class Account {
+    static final Metrics.Timer DEPOSIT_TIME = Metrics.timer("bank.deposit");
+    static final Metrics.Timer WITHDRAW_TIME = Metrics.timer("bank.withdraw");
+    static final Metrics.Counter DEPOSIT_LIMIT = Metrics.counter("bank.deposit.balance_limit");
+    static final Metrics.Counter WITHDRAW_SHORT = Metrics.counter("bank.withdraw.insufficient_funds");
+
+    private int accountNumber;
+    private String accountHolderName;
+    // Minor units (paise); guarded by this account's monitor
+    private long balance;
+    private String email;
+    private String phoneNumber;
+    // Null when the account lives only in memory
+    private TransactionJournal journal;
+    // Sequence number of the last journal record reflected in this account's state
+    private long lastSeq;
+    // Last accrual period (yyyymm) applied, so a rerun or resumed batch never charges twice
+    private int accruedPeriod;
+    // Null until the account is registered with an AccountStore
+    private ContactIndex contacts;
+    // Null until the first deposit, withdrawal or transfer
+    private AccountHistory history;
+
+    public Account(int accountNumber, String accountHolderName, double initialDeposit, String email, String phoneNumber) {
+        this(accountNumber, accountHolderName, Money.toMinor(initialDeposit), email, phoneNumber);
+        if (balance < 0) {
+            throw new IllegalArgumentException("Invalid initial deposit: " + initialDeposit);
+        }
+    }
+
+    private Account(int accountNumber, String accountHolderName, long balance, String email, String phoneNumber) {
+        this.accountNumber = accountNumber;
+        this.accountHolderName = accountHolderName;
+        this.balance = balance;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+    }
+
+    public int getAccountNumber() {
+        return accountNumber;
+    }
+
+    public synchronized long getBalance() {
+        return balance;
+    }
+
+    // Throws ArithmeticException rather than let the balance wrap
+    public synchronized void credit(long minor) {
+        balance = Math.addExact(balance, minor);
+    }
+
+    public synchronized boolean debit(long minor) {
+        if (balance < minor) {
+            return false;
+        }
+        balance -= minor;
+        return true;
+    }
+
+    public TransactionJournal getJournal() {
+        return journal;
+    }
+
+    public synchronized String getEmail() {
+        return email;
+    }
+
+    public synchronized String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    synchronized void indexContacts(ContactIndex contacts) {
+        this.contacts = contacts;
+        contacts.add(email, phoneNumber, accountNumber);
+    }
+
+    // Must hold this account's monitor; the index entry moves together with the fields
+    private void setContact(String email, String phoneNumber) {
+        if (contacts != null) {
+            contacts.move(this.email, this.phoneNumber, email, phoneNumber, accountNumber);
+        }
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+    }
+
+    // Journal records are appended while the account is locked, so their order matches apply order
+    synchronized long opened(TransactionJournal journal) {
+        this.journal = journal;
+        lastSeq = journal.appendOpen(accountNumber, balance, accountHolderName, email, phoneNumber);
+        return lastSeq;
+    }
+
+    synchronized void attach(TransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    synchronized void applied(long seq) {
+        lastSeq = seq;
+    }
+
+    private long log(byte type, long amount) {
+        return log(type, 0, amount);
+    }
+
+    private long log(byte type, int otherAccount, long amount) {
+        if (journal == null) {
+            return 0;
+        }
+        lastSeq = journal.append(type, accountNumber, otherAccount, amount);
+        return lastSeq;
+    }
+
+    private void awaitDurable(long seq) {
+        if (journal != null) {
+            journal.awaitDurable(seq);
+        }
+    }
+
+    // Replay skips records the snapshot already reflects
+    synchronized void replay(long delta, long seq) {
+        if (seq > lastSeq) {
+            balance += delta;
+            lastSeq = seq;
+        }
+    }
+
+    synchronized void replayAccrual(long delta, int period, long seq) {
+        if (seq > lastSeq) {
+            balance += delta;
+            accruedPeriod = Math.max(accruedPeriod, period);
+            lastSeq = seq;
+        }
+    }
+
+    synchronized void replayContact(String email, String phoneNumber, long seq) {
+        if (seq > lastSeq) {
+            setContact(email, phoneNumber);
+            lastSeq = seq;
+        }
+    }
+
+    synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(accountNumber);
+        out.writeLong(lastSeq);
+        out.writeLong(balance);
+        out.writeUTF(accountHolderName);
+        out.writeUTF(email);
+        out.writeUTF(phoneNumber);
+        out.writeInt(accruedPeriod);
+    }
+
+    static Account readFrom(DataInputStream in, int version) throws IOException {
+        int number = in.readInt();
+        long seq = in.readLong();
+        long balance = in.readLong();
+        Account account = new Account(number, in.readUTF(), balance, in.readUTF(), in.readUTF());
+        account.lastSeq = seq;
+        if (version >= 2) {
+            account.accruedPeriod = in.readInt();
+        }
+        return account;
+    }
+
+    static Account replayOpen(int number, long balance, String name, String email, String phone, long seq) {
+        Account account = new Account(number, name, balance, email, phone);
+        account.lastSeq = seq;
+        return account;
+    }
+
+    // Journaled credit; returns the record's sequence number, 0 without a journal, or -1 if the balance would overflow
+    synchronized long depositMinor(long minor) {
+        long start = System.nanoTime();
+        try {
+            credit(minor);
+        } catch (ArithmeticException e) {
+            DEPOSIT_LIMIT.inc();
+            DEPOSIT_TIME.stop(start);
+            return -1;
+        }
+        record(AccountHistory.DEPOSIT, minor);
+        long seq = log(TransactionJournal.DEPOSIT, minor);
+        DEPOSIT_TIME.stop(start);
+        return seq;
+    }
+
+    // Journaled debit; returns -1 when funds are insufficient
+    synchronized long withdrawMinor(long minor) {
+        long start = System.nanoTime();
+        long seq = -1;
+        if (debit(minor)) {
+            record(AccountHistory.WITHDRAW, minor);
+            seq = log(TransactionJournal.WITHDRAW, minor);
+        } else {
+            WITHDRAW_SHORT.inc();
+        }
+        WITHDRAW_TIME.stop(start);
+        return seq;
+    }
+
+    // Interest on the opening balance, then the fee if the account is still under the minimum; no-op if already applied
+    synchronized void accrue(Accrual policy, int period, Accrual.Tally tally) {
+        tally.accounts++;
+        if (accruedPeriod >= period) {
+            return;
+        }
+        accruedPeriod = period;
+        tally.accrued++;
+        long interest = policy.interest(balance);
+        if (interest > Long.MAX_VALUE - balance) {
+            interest = 0;
+        }
+        long fee = policy.fee(balance + interest);
+        if (interest > 0) {
+            credit(interest);
+            record(AccountHistory.INTEREST, interest);
+            tally.lastSeq = Math.max(tally.lastSeq, log(TransactionJournal.INTEREST, period, interest));
+            tally.interest += interest;
+        }
+        if (fee > 0) {
+            balance -= fee;
+            record(AccountHistory.FEE, fee);
+            tally.lastSeq = Math.max(tally.lastSeq, log(TransactionJournal.FEE, period, fee));
+            tally.fees += fee;
+        }
+    }
+
+    // Must hold this account's monitor
+    void record(byte type, long minor) {
+        if (history == null) {
+            history = new AccountHistory();
+        }
+        history.record(System.currentTimeMillis(), type, minor, balance);
+    }
+
+    // Streams events with fromMillis <= timestamp < toMillis, oldest first
+    public void statement(long fromMillis, long toMillis, AccountHistory.Visitor visitor) throws IOException {
+        AccountHistory h;
+        synchronized (this) {
+            h = history;
+        }
+        if (h != null) {
+            h.scan(fromMillis, toMillis, visitor);
+        }
+    }
+
+    public void deposit(double amount) {
+        long minor = Money.toMinor(amount);
+        if (minor > 0) {
+            long newBalance;
+            long seq;
+            synchronized (this) {
+                seq = depositMinor(minor);
+                newBalance = balance;
+            }
+            if (seq < 0) {
+                System.out.println("Deposit rejected: the balance would exceed the maximum.");
+                return;
+            }
+            awaitDurable(seq);
+            System.out.println("Deposit successful. New balance: ₹" + Money.format(newBalance));
+        } else {
+            System.out.println("Invalid deposit amount. Please enter a positive value up to ₹" + Money.format(Money.MAX_MINOR) + ".");
+        }
+    }
+
+    public void withdraw(double amount) {
+        long minor = Money.toMinor(amount);
+        if (minor > 0) {
+            long newBalance;
+            long seq;
+            synchronized (this) {
+                seq = withdrawMinor(minor);
+                newBalance = seq < 0 ? -1 : balance;
+            }
+            awaitDurable(seq);
+            if (newBalance >= 0) {
+                System.out.println("Withdrawal successful. New balance: ₹" + Money.format(newBalance));
+            } else {
+                System.out.println("Insufficient balance.");
+            }
+        } else {
+            System.out.println("Invalid withdrawal amount. Please enter a positive value up to ₹" + Money.format(Money.MAX_MINOR) + ".");
+        }
+    }
+
+    public void displayAccountDetails() {
+        System.out.println("\n------ Account Details ------");
+        System.out.println("Account Number: " + accountNumber);
+        System.out.println("Account Holder: " + accountHolderName);
+        System.out.println("Balance: ₹" + Money.format(getBalance()));
+        System.out.println("Email: " + email);
+        System.out.println("Phone: " + phoneNumber);
+        System.out.println("-----------------------------");
+    }
+
+    public void updateContactDetails(String email, String phoneNumber) {
+        long seq = 0;
+        synchronized (this) {
+            setContact(email, phoneNumber);
+            if (journal != null) {
+                lastSeq = journal.appendContact(accountNumber, email, phoneNumber);
+                seq = lastSeq;
+            }
+        }
+        awaitDurable(seq);
+        System.out.println("Contact details updated successfully.");
+    }
+}
+
+class Money {
+    // Largest single amount accepted from input, ₹1,000,000,000,000.00
+    public static final long MAX_MINOR = 100_000_000_000_000L;
+    public static final long INVALID = -1;
+
+    // INVALID for NaN, infinities, negative amounts and anything above MAX_MINOR
+    public static long toMinor(double amount) {
+        if (!(amount >= 0 && amount <= MAX_MINOR / 100.0)) {
+            return INVALID;
+        }
+        return Math.round(amount * 100);
+    }
+
+    public static String format(long minor) {
+        String sign = minor < 0 ? "-" : "";
+        long abs = Math.abs(minor);
+        return sign + (abs / 100) + "." + (abs % 100 < 10 ? "0" : "") + (abs % 100);
+    }
+}
+
+class Ledger {
+    public static final int OK = 0;
+    public static final int INVALID_AMOUNT = 1;
+    public static final int INSUFFICIENT_FUNDS = 2;
+    public static final int SAME_ACCOUNT = 3;
+    public static final int BALANCE_LIMIT = 6;
+    static final Metrics.Timer TRANSFER_TIME = Metrics.timer("bank.transfer");
+    static final Metrics.Counter TRANSFER_INVALID = Metrics.counter("bank.transfer.invalid");
+    static final Metrics.Counter TRANSFER_SHORT = Metrics.counter("bank.transfer.insufficient_funds");
+    static final Metrics.Counter TRANSFER_LIMIT = Metrics.counter("bank.transfer.balance_limit");
+
+    public static int transfer(Account from, Account to, long minor) {
+        long seq = post(from, to, minor);
+        if (seq < 0) {
+            return (int) -seq;
+        }
+        TransactionJournal journal = from.getJournal();
+        if (journal != null) {
+            journal.awaitDurable(seq);
+        }
+        return OK;
+    }
+
+    /*
+     * Applies and journals a transfer without waiting for durability. Returns the journal
+     * sequence number (0 without a journal) or a negated status code on failure.
+     * Locks are always taken in account-number order, so two opposing transfers cannot deadlock.
+     */
+    static long post(Account from, Account to, long minor) {
+        long start = System.nanoTime();
+        try {
+            long seq = applyTransfer(from, to, minor);
+            if (seq == -INSUFFICIENT_FUNDS) {
+                TRANSFER_SHORT.inc();
+            } else if (seq == -BALANCE_LIMIT) {
+                TRANSFER_LIMIT.inc();
+            } else if (seq < 0) {
+                TRANSFER_INVALID.inc();
+            }
+            return seq;
+        } finally {
+            TRANSFER_TIME.stop(start);
+        }
+    }
+
+    private static long applyTransfer(Account from, Account to, long minor) {
+        if (minor <= 0) {
+            return -INVALID_AMOUNT;
+        }
+        if (from == to) {
+            return -SAME_ACCOUNT;
+        }
+        Account first = from.getAccountNumber() < to.getAccountNumber() ? from : to;
+        Account second = first == from ? to : from;
+        TransactionJournal journal = from.getJournal();
+        synchronized (first) {
+            synchronized (second) {
+                if (from.getBalance() < minor) {
+                    return -INSUFFICIENT_FUNDS;
+                }
+                // Credit first so an overflow leaves both accounts untouched
+                try {
+                    to.credit(minor);
+                } catch (ArithmeticException e) {
+                    return -BALANCE_LIMIT;
+                }
+                from.debit(minor);
+                from.record(AccountHistory.TRANSFER_OUT, minor);
+                to.record(AccountHistory.TRANSFER_IN, minor);
+                if (journal == null) {
+                    return 0;
+                }
+                long seq = journal.append(TransactionJournal.TRANSFER, from.getAccountNumber(), to.getAccountNumber(), minor);
+                from.applied(seq);
+                to.applied(seq);
+                return seq;
+            }
+        }
+    }
+
+    // Random transfers plus deposits from 1..N threads; the final total must match exactly
+    public static void benchmark(int accountCount, int opsPerThread) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(cores, 2); threads *= 2) {
+            Account[] accounts = new Account[accountCount];
+            for (int i = 0; i < accountCount; i++) {
+                accounts[i] = new Account(1001 + i, "Bench " + i, 1000.0, "", "");
+            }
+            long expected = accountCount * Money.toMinor(1000.0);
+            AtomicLong deposited = new AtomicLong();
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    long mine = 0;
+                    for (int i = 0; i < opsPerThread; i++) {
+                        Account a = accounts[rnd.nextInt(accountCount)];
+                        if ((i & 7) == 0) {
+                            a.credit(100);
+                            mine += 100;
+                        } else {
+                            transfer(a, accounts[rnd.nextInt(accountCount)], 1 + rnd.nextInt(5000));
+                        }
+                    }
+                    deposited.addAndGet(mine);
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread w : workers) {
+                w.start();
+            }
+            for (Thread w : workers) {
+                try {
+                    w.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            double secs = (System.nanoTime() - start) / 1e9;
+            long total = 0;
+            for (Account a : accounts) {
+                total += a.getBalance();
+            }
+            long lost = expected + deposited.get() - total;
+            System.out.printf("threads=%d tx/sec=%.0f lostUpdates(minor units)=%d%n",
+                    threads, threads * (long) opsPerThread / secs, lost);
+        }
+    }
+}
+
+/*
+ * Time-ordered event history of one account, stored column-wise: parallel primitive arrays
+ * of timestamp, amount, balance-after and type, in chunks of up to CHUNK events. Only the
+ * newest HOT_CHUNKS chunks stay on the heap; older ones are handed to a background thread
+ * that spills them to a shared file, and are read back one chunk at a time when a statement
+ * covers them. Chunks start small and double, so accounts with little activity cost little
+ * memory. A chunk is never changed below its size, so a statement copies chunk references
+ * under the monitor and reads and visits events without holding it.
+ */
+class AccountHistory {
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAW = 2;
+    public static final byte TRANSFER_IN = 3;
+    public static final byte TRANSFER_OUT = 4;
+    public static final byte INTEREST = 5;
+    public static final byte FEE = 6;
+    public static final String[] TYPE_NAMES = {"", "Deposit", "Withdrawal", "Transfer in", "Transfer out", "Interest", "Fee"};
+
+    static final int CHUNK = 4096;
+    static final int HOT_CHUNKS = 2;
+    static final int EVENT_BYTES = 8 + 8 + 8 + 1;
+
+    interface Visitor {
+        void accept(long timestamp, byte type, long amount, long balanceAfter);
+    }
+
+    static final class Chunk {
+        long[] time;
+        long[] amount;
+        long[] balance;
+        byte[] type;
+        int size;
+
+        Chunk() {
+            this(new long[8], new long[8], new long[8], new byte[8], 0);
+        }
+
+        Chunk(long[] time, long[] amount, long[] balance, byte[] type, int size) {
+            this.time = time;
+            this.amount = amount;
+            this.balance = balance;
+            this.type = type;
+            this.size = size;
+        }
+
+        // The events recorded so far; later records go past size or into new arrays
+        Chunk view() {
+            return new Chunk(time, amount, balance, type, size);
+        }
+    }
+
+    // Spilled chunks, oldest first: file slot, event count and time range of each. Entries
+    // below size never change, so a scan may keep the arrays it saw under the monitor.
+    static final class Spilled {
+        long[] offset = new long[4];
+        int[] count = new int[4];
+        long[] first = new long[4];
+        long[] last = new long[4];
+        int size;
+
+        synchronized void add(long at, Chunk c) {
+            if (size == offset.length) {
+                int n = size * 2;
+                offset = Arrays.copyOf(offset, n);
+                count = Arrays.copyOf(count, n);
+                first = Arrays.copyOf(first, n);
+                last = Arrays.copyOf(last, n);
+            }
+            offset[size] = at;
+            count[size] = c.size;
+            first[size] = c.time[0];
+            last[size] = c.time[c.size - 1];
+            size++;
+        }
+    }
+
+    private Spilled spilled;
+    // Full chunks queued for the spill thread, oldest first; still served from the heap
+    private final ArrayList<Chunk> spilling = new ArrayList<>();
+    private final ArrayList<Chunk> hot = new ArrayList<>();
+    private long lastTime = Long.MIN_VALUE;
+
+    // Callers hold the owning account's monitor; this one only guards the chunk lists
+    synchronized void record(long time, byte type, long amount, long balanceAfter) {
+        // Keep timestamps monotonic even if the wall clock steps back
+        time = Math.max(time, lastTime);
+        lastTime = time;
+        Chunk c = hot.isEmpty() ? null : hot.get(hot.size() - 1);
+        if (c == null || c.size == CHUNK) {
+            if (hot.size() == HOT_CHUNKS) {
+                Chunk full = hot.remove(0);
+                spilling.add(full);
+                EventSpill.submit(() -> spill(full));
+            }
+            c = new Chunk();
+            hot.add(c);
+        } else if (c.size == c.time.length) {
+            int n = Math.min(CHUNK, c.size * 2);
+            c.time = Arrays.copyOf(c.time, n);
+            c.amount = Arrays.copyOf(c.amount, n);
+            c.balance = Arrays.copyOf(c.balance, n);
+            c.type = Arrays.copyOf(c.type, n);
+        }
+        c.time[c.size] = time;
+        c.amount[c.size] = amount;
+        c.balance[c.size] = balanceAfter;
+        c.type[c.size] = type;
+        c.size++;
+    }
+
+    // Runs on the spill thread. A chunk that cannot be written stays on the heap, and so
+    // do the ones queued after it, which keeps spilled chunks in time order.
+    private void spill(Chunk c) {
+        synchronized (this) {
+            if (spilling.isEmpty() || spilling.get(0) != c) {
+                return;
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(c.size * EVENT_BYTES);
+        for (int i = 0; i < c.size; i++) {
+            buf.putLong(c.time[i]);
+        }
+        for (int i = 0; i < c.size; i++) {
+            buf.putLong(c.amount[i]);
+        }
+        for (int i = 0; i < c.size; i++) {
+            buf.putLong(c.balance[i]);
+        }
+        buf.put(c.type, 0, c.size);
+        buf.flip();
+        long at;
+        try {
+            at = EventSpill.append(buf);
+        } catch (UncheckedIOException e) {
+            System.out.println(e.getMessage() + ": " + e.getCause().getMessage());
+            return;
+        }
+        synchronized (this) {
+            if (spilled == null) {
+                Spilled s = spilled = new Spilled();
+                // Frees the slots once this history is unreachable; must not capture this
+                EventSpill.releaseWhenUnreachable(this, s);
+            }
+            spilled.add(at, c);
+            spilling.remove(0);
+        }
+    }
+
+    void scan(long from, long to, Visitor visitor) throws IOException {
+        long[] offset, first, last;
+        int[] count;
+        int n;
+        List<Chunk> heap;
+        synchronized (this) {
+            Spilled s = spilled;
+            n = s == null ? 0 : s.size;
+            offset = s == null ? null : s.offset;
+            count = s == null ? null : s.count;
+            first = s == null ? null : s.first;
+            last = s == null ? null : s.last;
+            heap = new ArrayList<>(spilling.size() + hot.size());
+            for (Chunk c : spilling) {
+                heap.add(c.view());
+            }
+            for (Chunk c : hot) {
+                heap.add(c.view());
+            }
+        }
+        try {
+            // Skip spilled chunks that end before the range; they are in time order
+            int lo = 0;
+            int hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (last[mid] < from) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            Chunk scratch = null;
+            for (int i = lo; i < n && first[i] < to; i++) {
+                if (scratch == null) {
+                    scratch = new Chunk();
+                }
+                EventSpill.read(offset[i], count[i], scratch);
+                if (!visit(scratch, from, to, visitor)) {
+                    return;
+                }
+            }
+            for (Chunk c : heap) {
+                if (!visit(c, from, to, visitor)) {
+                    return;
+                }
+            }
+        } finally {
+            // The slots being read must not be freed and reused before the scan is done
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    // Returns false once the range has been passed
+    private static boolean visit(Chunk c, long from, long to, Visitor visitor) {
+        int i = Arrays.binarySearch(c.time, 0, c.size, from);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        // binarySearch may land on any of several equal timestamps
+        while (i > 0 && c.time[i - 1] >= from) {
+            i--;
+        }
+        for (; i < c.size; i++) {
+            if (c.time[i] >= to) {
+                return false;
+            }
+            visitor.accept(c.time[i], c.type[i], c.amount[i], c.balance[i]);
+        }
+        return true;
+    }
+}
+
+/*
+ * Shared spill file for AccountHistory chunks; created on first use, deleted on exit. Only
+ * full chunks are spilled, so the file is cut into slots of one full chunk each. Writes run
+ * on one background thread, off every account's mutation path, and the slots of histories
+ * that are no longer reachable go on a free list for reuse, so the file stays as large as
+ * the history still in use.
+ */
+class EventSpill {
+    static final int SLOT_BYTES = AccountHistory.CHUNK * AccountHistory.EVENT_BYTES;
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bank-event-spill");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Cleaner cleaner = Cleaner.create();
+    private static FileChannel channel;
+    private static long end;
+    private static long[] free = new long[0];
+    private static int freeCount;
+
+    static void submit(Runnable spill) {
+        writer.execute(spill);
+    }
+
+    static synchronized long append(ByteBuffer buf) {
+        if (buf.remaining() > SLOT_BYTES) {
+            throw new IllegalArgumentException("Chunk larger than a spill slot");
+        }
+        try {
+            if (channel == null) {
+                File f = File.createTempFile("bank-events", ".spill");
+                f.deleteOnExit();
+                channel = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            long offset = freeCount > 0 ? free[--freeCount] : end;
+            long at = offset;
+            while (buf.hasRemaining()) {
+                at += channel.write(buf, at);
+            }
+            if (offset == end) {
+                end += SLOT_BYTES;
+            }
+            return offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Event spill failed", e);
+        }
+    }
+
+    static void releaseWhenUnreachable(AccountHistory owner, AccountHistory.Spilled slots) {
+        cleaner.register(owner, () -> release(slots));
+    }
+
+    private static synchronized void release(AccountHistory.Spilled slots) {
+        synchronized (slots) {
+            if (freeCount + slots.size > free.length) {
+                free = Arrays.copyOf(free, Math.max(freeCount + slots.size, free.length * 2));
+            }
+            for (int i = 0; i < slots.size; i++) {
+                free[freeCount++] = slots.offset[i];
+            }
+        }
+    }
+
+    static void read(long offset, int count, AccountHistory.Chunk into) throws IOException {
+        FileChannel ch;
+        synchronized (EventSpill.class) {
+            ch = channel;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(count * AccountHistory.EVENT_BYTES);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, offset + buf.position()) < 0) {
+                throw new EOFException("Event spill truncated");
+            }
+        }
+        buf.flip();
+        if (into.time.length < count) {
+            into.time = new long[count];
+            into.amount = new long[count];
+            into.balance = new long[count];
+            into.type = new byte[count];
+        }
+        buf.asLongBuffer().get(into.time, 0, count);
+        buf.position(count * 8);
+        buf.asLongBuffer().get(into.amount, 0, count);
+        buf.position(count * 16);
+        buf.asLongBuffer().get(into.balance, 0, count);
+        buf.position(count * 24);
+        buf.get(into.type, 0, count);
+        into.size = count;
+    }
+}
+
+/*
+ * Secondary indexes from normalized email and phone number to account numbers. Each key
+ * maps to a small immutable array replaced through ConcurrentHashMap.compute, so updates
+ * only contend on the same key and lookups never lock. Lookups through AccountStore
+ * re-check the account's current contact details, so a reader never sees an account
+ * under a key it has already moved away from.
+ */
+class ContactIndex {
+    private final ConcurrentHashMap<String, int[]> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, int[]> byPhone = new ConcurrentHashMap<>();
+
+    static String emailKey(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String phoneKey(String phone) {
+        if (phone == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    void add(String email, String phone, int accountNumber) {
+        add(byEmail, emailKey(email), accountNumber);
+        add(byPhone, phoneKey(phone), accountNumber);
+    }
+
+    // New keys are added before old ones are removed, so the account is never unfindable
+    void move(String oldEmail, String oldPhone, String newEmail, String newPhone, int accountNumber) {
+        String oe = emailKey(oldEmail);
+        String ne = emailKey(newEmail);
+        if (!oe.equals(ne)) {
+            add(byEmail, ne, accountNumber);
+            remove(byEmail, oe, accountNumber);
+        }
+        String op = phoneKey(oldPhone);
+        String np = phoneKey(newPhone);
+        if (!op.equals(np)) {
+            add(byPhone, np, accountNumber);
+            remove(byPhone, op, accountNumber);
+        }
+    }
+
+    int[] byEmail(String key) {
+        return byEmail.getOrDefault(key, new int[0]);
+    }
+
+    int[] byPhone(String key) {
+        return byPhone.getOrDefault(key, new int[0]);
+    }
+
+    private static void add(ConcurrentHashMap<String, int[]> map, String key, int accountNumber) {
+        if (key.isEmpty()) {
+            return;
+        }
+        map.compute(key, (k, ids) -> {
+            if (ids == null) {
+                return new int[] {accountNumber};
+            }
+            for (int id : ids) {
+                if (id == accountNumber) {
+                    return ids;
+                }
+            }
+            int[] grown = Arrays.copyOf(ids, ids.length + 1);
+            grown[ids.length] = accountNumber;
+            return grown;
+        });
+    }
+
+    private static void remove(ConcurrentHashMap<String, int[]> map, String key, int accountNumber) {
+        if (key.isEmpty()) {
+            return;
+        }
+        map.computeIfPresent(key, (k, ids) -> {
+            int n = 0;
+            int[] kept = new int[ids.length];
+            for (int id : ids) {
+                if (id != accountNumber) {
+                    kept[n++] = id;
+                }
+            }
+            return n == 0 ? null : Arrays.copyOf(kept, n);
+        });
+    }
+}
+
+// Column-wise buffer of deposit/withdraw/transfer commands, amounts in minor units
+class TransactionBatch {
+    public static final byte DEPOSIT = 'D';
+    public static final byte WITHDRAW = 'W';
+    public static final byte TRANSFER = 'T';
+    public static final byte MALFORMED = '?';
+
+    byte[] ops;
+    int[] accounts;
+    int[] targets;
+    long[] amounts;
+    int size;
+
+    public TransactionBatch(int capacity) {
+        ops = new byte[capacity];
+        accounts = new int[capacity];
+        targets = new int[capacity];
+        amounts = new long[capacity];
+    }
+
+    public void add(byte op, int account, int target, long amount) {
+        if (size == ops.length) {
+            int n = Math.max(16, size * 2);
+            ops = Arrays.copyOf(ops, n);
+            accounts = Arrays.copyOf(accounts, n);
+            targets = Arrays.copyOf(targets, n);
+            amounts = Arrays.copyOf(amounts, n);
+        }
+        ops[size] = op;
+        accounts[size] = account;
+        targets[size] = target;
+        amounts[size] = amount;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return ops.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
+
+/*
+ * Applies batches of commands against an AccountStore. Nothing on the per-command path
+ * builds strings or touches the console; results come back as one status byte per
+ * command, and the journal is waited on once per batch instead of once per command.
+ */
+class BatchProcessor {
+    public static final byte OK = Ledger.OK;
+    public static final byte INVALID_AMOUNT = Ledger.INVALID_AMOUNT;
+    public static final byte INSUFFICIENT_FUNDS = Ledger.INSUFFICIENT_FUNDS;
+    public static final byte SAME_ACCOUNT = Ledger.SAME_ACCOUNT;
+    public static final byte NO_ACCOUNT = 4;
+    public static final byte MALFORMED = 5;
+    public static final byte BALANCE_LIMIT = Ledger.BALANCE_LIMIT;
+    public static final String[] STATUS_NAMES = {
+        "ok", "invalid amount", "insufficient funds", "same account", "no such account", "malformed", "balance limit"
+    };
+    // Rejected commands, indexed by status; e.g. "bank.batch.rejected.no_such_account"
+    static final Metrics.Counter[] REJECTED = new Metrics.Counter[STATUS_NAMES.length];
+
+    static {
+        for (int i = 1; i < STATUS_NAMES.length; i++) {
+            REJECTED[i] = Metrics.counter("bank.batch.rejected." + STATUS_NAMES[i].replace(' ', '_'));
+        }
+    }
+
+    private final AccountStore accounts;
+
+    public BatchProcessor(AccountStore accounts) {
+        this.accounts = accounts;
+    }
+
+    public byte[] apply(TransactionBatch batch) {
+        byte[] results = new byte[batch.size];
+        apply(batch, results, 0);
+        return results;
+    }
+
+    public void apply(TransactionBatch batch, byte[] results, int offset) {
+        long lastSeq = 0;
+        for (int i = 0; i < batch.size; i++) {
+            long r = applyOne(batch.ops[i], batch.accounts[i], batch.targets[i], batch.amounts[i]);
+            if (r < 0) {
+                results[offset + i] = (byte) -r;
+                REJECTED[(int) -r].inc();
+            } else {
+                results[offset + i] = OK;
+                lastSeq = Math.max(lastSeq, r);
+            }
+        }
+        TransactionJournal journal = accounts.getJournal();
+        if (journal != null && lastSeq > 0) {
+            journal.awaitDurable(lastSeq);
+        }
+    }
+
+    // Returns the journal sequence number (0 without a journal) or a negated status code
+    private long applyOne(byte op, int accountNumber, int target, long amount) {
+        if (op == TransactionBatch.MALFORMED) {
+            return -MALFORMED;
+        }
+        if (amount <= 0 || amount > Money.MAX_MINOR) {
+            return -INVALID_AMOUNT;
+        }
+        Account a = accounts.get(accountNumber);
+        if (a == null) {
+            return -NO_ACCOUNT;
+        }
+        switch (op) {
+            case TransactionBatch.DEPOSIT: {
+                long seq = a.depositMinor(amount);
+                return seq < 0 ? -BALANCE_LIMIT : seq;
+            }
+            case TransactionBatch.WITHDRAW: {
+                long seq = a.withdrawMinor(amount);
+                return seq < 0 ? -INSUFFICIENT_FUNDS : seq;
+            }
+            case TransactionBatch.TRANSFER: {
+                Account to = accounts.get(target);
+                return to == null ? -NO_ACCOUNT : Ledger.post(a, to, amount);
+            }
+            default:
+                return -MALFORMED;
+        }
+    }
+
+    /*
+     * Streams commands of the form "D <account> <amount>", "W <account> <amount>" or
+     * "T <from> <to> <amount>", one per line, amounts in rupees with up to two decimals.
+     * Lines are parsed straight from the byte buffer, batchSize at a time.
+     */
+    public byte[] process(InputStream in, int batchSize) throws IOException {
+        TransactionBatch batch = new TransactionBatch(batchSize);
+        CommandReader reader = new CommandReader(in);
+        byte[] results = new byte[batchSize];
+        int count = 0;
+        while (true) {
+            batch.clear();
+            while (batch.size < batchSize && reader.next(batch)) {
+                // keep filling
+            }
+            if (batch.size == 0) {
+                break;
+            }
+            if (results.length < count + batch.size) {
+                results = Arrays.copyOf(results, Math.max(results.length * 2, count + batch.size));
+            }
+            apply(batch, results, count);
+            count += batch.size;
+        }
+        return Arrays.copyOf(results, count);
+    }
+
+    static final class CommandReader {
+        private final InputStream in;
+        private final byte[] buf = new byte[1 << 16];
+        private int pos;
+        private int limit;
+        private boolean started;
+
+        CommandReader(InputStream in) {
+            this.in = in;
+        }
+
+        // Unsigned, so a non-ASCII byte is a malformed character rather than end of input
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+                // Files saved by some editors open with a UTF-8 byte order mark
+                if (!started && limit >= 3 && buf[0] == (byte) 0xEF && buf[1] == (byte) 0xBB && buf[2] == (byte) 0xBF) {
+                    pos = 3;
+                }
+                started = true;
+                if (pos == limit) {
+                    return read();
+                }
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        // Adds the next non-blank line to the batch; false at end of input
+        boolean next(TransactionBatch batch) throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c == '\n' || c == '\r' || c == ' ' || c == '\t');
+            if (c < 0) {
+                return false;
+            }
+            byte op = c < 0x80 ? (byte) Character.toUpperCase(c) : TransactionBatch.MALFORMED;
+            boolean ok = op == TransactionBatch.DEPOSIT || op == TransactionBatch.WITHDRAW
+                    || op == TransactionBatch.TRANSFER;
+            long account = -1;
+            long target = 0;
+            long amount = -1;
+            int field = 0;
+            long value = 0;
+            int digits = 0;
+            int decimals = -1;
+            while (true) {
+                c = read();
+                boolean end = c < 0 || c == '\n';
+                if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    digits++;
+                    if (decimals >= 0 && ++decimals > 2) {
+                        ok = false;
+                    }
+                } else if (c == '.' && decimals < 0 && digits > 0) {
+                    decimals = 0;
+                } else if (c == ' ' || c == '\t' || c == '\r' || end) {
+                    if (digits > 0) {
+                        boolean amountField = field == (op == TransactionBatch.TRANSFER ? 2 : 1);
+                        if (amountField) {
+                            for (int d = Math.max(decimals, 0); d < 2; d++) {
+                                value *= 10;
+                            }
+                            amount = value;
+                        } else if (decimals >= 0) {
+                            ok = false;
+                        } else if (field == 0) {
+                            account = value;
+                        } else if (field == 1) {
+                            target = value;
+                        } else {
+                            ok = false;
+                        }
+                        field++;
+                        value = 0;
+                        digits = 0;
+                        decimals = -1;
+                    }
+                    if (end) {
+                        break;
+                    }
+                } else {
+                    ok = false;
+                }
+                if (digits > 15) {
+                    ok = false;
+                }
+            }
+            ok &= field == (op == TransactionBatch.TRANSFER ? 3 : 2)
+                    && account <= Integer.MAX_VALUE && target <= Integer.MAX_VALUE;
+            if (ok) {
+                batch.add(op, (int) account, (int) target, amount);
+            } else {
+                batch.add(TransactionBatch.MALFORMED, 0, 0, 0);
+            }
+            return true;
+        }
+    }
+
+    // Single-threaded random deposits/withdrawals/transfers over an in-memory store
+    public static void benchmark(int accountCount, int batchSize, int batches) {
+        AccountStore store = new AccountStore();
+        for (int i = 0; i < accountCount; i++) {
+            store.open("", 1000, "", "");
+        }
+        BatchProcessor processor = new BatchProcessor(store);
+        TransactionBatch batch = new TransactionBatch(batchSize);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < batchSize; i++) {
+            int a = AccountStore.FIRST_ACCOUNT_NUMBER + rnd.nextInt(accountCount);
+            int b = AccountStore.FIRST_ACCOUNT_NUMBER + rnd.nextInt(accountCount);
+            byte op = i % 3 == 0 ? TransactionBatch.DEPOSIT : i % 3 == 1 ? TransactionBatch.WITHDRAW : TransactionBatch.TRANSFER;
+            batch.add(op, a, b, 1 + rnd.nextInt(10_000));
+        }
+        byte[] results = new byte[batchSize];
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < batches; i++) {
+                processor.apply(batch, results, 0);
+            }
+            double secs = (System.nanoTime() - start) / 1e9;
+            System.out.printf("ops/sec=%.0f%n", (double) batchSize * batches / secs);
+        }
+    }
+}
+
+/*
+ * Account numbers are handed out sequentially from FIRST_ACCOUNT_NUMBER, so the store is a
+ * dense array indexed by (accountNumber - FIRST_ACCOUNT_NUMBER), split into fixed-size pages.
+ * Growing only adds pages; existing pages never move, and lookups take no lock.
+ */
+class AccountStore {
+    public static final int FIRST_ACCOUNT_NUMBER = 1001;
+    private static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private volatile AtomicReferenceArray<Account>[] pages;
+    private final AtomicInteger lastAccountNumber = new AtomicInteger(FIRST_ACCOUNT_NUMBER - 1);
+    private final AtomicInteger count = new AtomicInteger();
+    private final ContactIndex contacts = new ContactIndex();
+    private TransactionJournal journal;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public AccountStore() {
+        pages = new AtomicReferenceArray[16];
+    }
+
+    public int nextAccountNumber() {
+        return lastAccountNumber.incrementAndGet();
+    }
+
+    public void setJournal(TransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    public TransactionJournal getJournal() {
+        return journal;
+    }
+
+    public Account open(String name, double initialDeposit, String email, String phone) {
+        Account account = new Account(nextAccountNumber(), name, initialDeposit, email, phone);
+        long seq = post(account);
+        if (journal != null) {
+            journal.awaitDurable(seq);
+        }
+        return account;
+    }
+
+    /*
+     * Stores and journals a new account without waiting for durability, like Ledger.post;
+     * returns the OPEN record's sequence number (0 without a journal). The account is in the
+     * store before its record exists, so a snapshot that rotates past the record still sees
+     * it, and its monitor keeps every other change to it behind the OPEN record.
+     */
+    public long post(Account account) {
+        synchronized (account) {
+            put(account);
+            return journal == null ? 0 : account.opened(journal);
+        }
+    }
+
+    public void put(Account account) {
+        int index = account.getAccountNumber() - FIRST_ACCOUNT_NUMBER;
+        if (index < 0) {
+            throw new IllegalArgumentException("Account number below " + FIRST_ACCOUNT_NUMBER);
+        }
+        account.indexContacts(contacts);
+        if (page(index >>> PAGE_BITS).getAndSet(index & (PAGE_SIZE - 1), account) == null) {
+            count.incrementAndGet();
+        }
+        lastAccountNumber.accumulateAndGet(account.getAccountNumber(), Math::max);
+    }
+
+    public List<Account> findByEmail(String email) {
+        String key = ContactIndex.emailKey(email);
+        List<Account> found = new ArrayList<>();
+        for (int number : contacts.byEmail(key)) {
+            Account a = get(number);
+            if (a != null && ContactIndex.emailKey(a.getEmail()).equals(key)) {
+                found.add(a);
+            }
+        }
+        return found;
+    }
+
+    public List<Account> findByPhone(String phone) {
+        String key = ContactIndex.phoneKey(phone);
+        List<Account> found = new ArrayList<>();
+        for (int number : contacts.byPhone(key)) {
+            Account a = get(number);
+            if (a != null && ContactIndex.phoneKey(a.getPhoneNumber()).equals(key)) {
+                found.add(a);
+            }
+        }
+        return found;
+    }
+
+    public Account get(int accountNumber) {
+        int index = accountNumber - FIRST_ACCOUNT_NUMBER;
+        if (index < 0) {
+            return null;
+        }
+        AtomicReferenceArray<Account>[] p = pages;
+        int pageIndex = index >>> PAGE_BITS;
+        if (pageIndex >= p.length || p[pageIndex] == null) {
+            return null;
+        }
+        return p[pageIndex].get(index & (PAGE_SIZE - 1));
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    public void forEach(Consumer<Account> action) {
+        AtomicReferenceArray<Account>[] p = pages;
+        for (AtomicReferenceArray<Account> page : p) {
+            if (page == null) {
+                continue;
+            }
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                Account account = page.get(i);
+                if (account != null) {
+                    action.accept(account);
+                }
+            }
+        }
+    }
+
+    // Page-at-a-time access for batch jobs; page i holds account numbers from FIRST_ACCOUNT_NUMBER + i * PAGE_SIZE
+    int pageCount() {
+        return pages.length;
+    }
+
+    AtomicReferenceArray<Account> pageAt(int pageIndex) {
+        AtomicReferenceArray<Account>[] p = pages;
+        return pageIndex < p.length ? p[pageIndex] : null;
+    }
+
+    private AtomicReferenceArray<Account> page(int pageIndex) {
+        AtomicReferenceArray<Account>[] p = pages;
+        if (pageIndex < p.length && p[pageIndex] != null) {
+            return p[pageIndex];
+        }
+        synchronized (this) {
+            p = pages;
+            if (pageIndex >= p.length) {
+                p = Arrays.copyOf(p, Math.max(p.length * 2, pageIndex + 1));
+            }
+            if (p[pageIndex] == null) {
+                p[pageIndex] = new AtomicReferenceArray<>(PAGE_SIZE);
+            }
+            // Volatile write publishes the new page to lock-free readers
+            pages = p;
+            return p[pageIndex];
+        }
+    }
+
+    // Random lookups at growing store sizes; constant-time means ns/lookup stays flat
+    public static void benchmark(int maxAccounts) {
+        for (int size = 1_000; size <= maxAccounts; size *= 10) {
+            AccountStore store = new AccountStore();
+            for (int i = 0; i < size; i++) {
+                store.open("", 0, "", "");
+            }
+            int[] keys = new int[1 << 20];
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = FIRST_ACCOUNT_NUMBER + rnd.nextInt(size);
+            }
+            long sink = 0;
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < 10; round++) {
+                long start = System.nanoTime();
+                for (int k : keys) {
+                    sink += store.get(k).getAccountNumber();
+                }
+                best = Math.min(best, (System.nanoTime() - start) / (double) keys.length);
+            }
+            System.out.printf("accounts=%d ns/lookup=%.1f (%d)%n", size, best, sink & 1);
+        }
+    }
+}
+
+/*
+ * Monthly interest and maintenance fees in fixed point. The monthly rate is held as a whole
+ * number of billionths, so every adjustment is integer arithmetic on paise with a single
+ * half-up rounding, and the result does not depend on which thread handled the account.
+ *
+ * A run walks the AccountStore with fork-join, one page of PAGE_SIZE adjacent accounts per
+ * leaf. Each account is locked only while its own adjustment is posted, so teller
+ * transactions keep flowing during a run, and the journal is waited on once per page.
+ */
+class Accrual {
+    static final long SCALE = 1_000_000_000L;
+    static final Metrics.Timer PAGE_TIME = Metrics.timer("bank.accrual.page");
+    // 3.5% a year, and ₹50 a month on balances under ₹1,000
+    static final Accrual STANDARD = new Accrual(350, 5_000, 100_000);
+
+    final long rate;
+    final long fee;
+    final long minimumBalance;
+
+    // Annual rate in basis points; the fee applies when the balance is under the minimum
+    Accrual(int annualRateBps, long monthlyFeeMinor, long minimumBalanceMinor) {
+        rate = annualRateBps * SCALE / (10_000L * 12);
+        fee = monthlyFeeMinor;
+        minimumBalance = minimumBalanceMinor;
+    }
+
+    // Split at SCALE so neither product can overflow
+    long interest(long balance) {
+        if (balance <= 0) {
+            return 0;
+        }
+        return balance / SCALE * rate + (balance % SCALE * rate + SCALE / 2) / SCALE;
+    }
+
+    // Never takes the balance below zero
+    long fee(long balance) {
+        if (balance <= 0 || balance >= minimumBalance) {
+            return 0;
+        }
+        return Math.min(fee, balance);
+    }
+
+    static int period(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+
+    static YearMonth month(int period) {
+        return YearMonth.of(period / 100, period % 100);
+    }
+
+    // Per-leaf totals, folded into the report once per page
+    static final class Tally {
+        long accounts;
+        long accrued;
+        long interest;
+        long fees;
+        long lastSeq;
+    }
+
+    static final class Report {
+        final int period;
+        final LongAdder accounts = new LongAdder();
+        final LongAdder accrued = new LongAdder();
+        final LongAdder interest = new LongAdder();
+        final LongAdder fees = new LongAdder();
+        double seconds;
+
+        Report(int period) {
+            this.period = period;
+        }
+
+        void add(Tally t) {
+            accounts.add(t.accounts);
+            accrued.add(t.accrued);
+            interest.add(t.interest);
+            fees.add(t.fees);
+        }
+
+        double accountsPerSecond() {
+            return accounts.sum() / Math.max(seconds, 1e-9);
+        }
+
+        void print() {
+            System.out.printf("Accrual for %s: %d of %d accounts in %.3fs (%.0f accounts/sec), interest ₹%s, fees ₹%s%n",
+                    month(period), accrued.sum(), accounts.sum(), seconds, accountsPerSecond(),
+                    Money.format(interest.sum()), Money.format(fees.sum()));
+        }
+    }
+
+    Report run(AccountStore accounts, int period, ForkJoinPool pool) {
+        Report report = new Report(period);
+        long start = System.nanoTime();
+        pool.invoke(new PageTask(this, accounts, period, report, 0, accounts.pageCount()));
+        report.seconds = (System.nanoTime() - start) / 1e9;
+        return report;
+    }
+
+    @SuppressWarnings("serial")
+    static final class PageTask extends RecursiveAction {
+        private final Accrual policy;
+        private final AccountStore accounts;
+        private final int period;
+        private final Report report;
+        private final int lo;
+        private final int hi;
+
+        PageTask(Accrual policy, AccountStore accounts, int period, Report report, int lo, int hi) {
+            this.policy = policy;
+            this.accounts = accounts;
+            this.period = period;
+            this.report = report;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new PageTask(policy, accounts, period, report, lo, mid),
+                        new PageTask(policy, accounts, period, report, mid, hi));
+                return;
+            }
+            AtomicReferenceArray<Account> page = accounts.pageAt(lo);
+            if (page == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            Tally tally = new Tally();
+            for (int i = 0; i < AccountStore.PAGE_SIZE; i++) {
+                Account a = page.get(i);
+                if (a != null) {
+                    a.accrue(policy, period, tally);
+                }
+            }
+            TransactionJournal journal = accounts.getJournal();
+            if (journal != null && tally.lastSeq > 0) {
+                journal.awaitDurable(tally.lastSeq);
+            }
+            report.add(tally);
+            PAGE_TIME.stop(start);
+        }
+    }
+
+    /*
+     * Sequential and parallel runs, in memory and journaled, with teller threads posting
+     * transfers throughout. Transfers move money without creating it, so the closing total
+     * must equal the opening total plus interest minus fees.
+     */
+    static void benchmark(int accountCount) throws IOException {
+        Accrual policy = STANDARD;
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (boolean journaled : new boolean[] {false, true}) {
+            File dir = journaled ? Files.createTempDirectory("bank-accrual").toFile() : null;
+            BankStorage storage = journaled ? BankStorage.open(dir, true) : null;
+            AccountStore store = journaled ? storage.accounts() : new AccountStore();
+            TransactionJournal journal = store.getJournal();
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long lastSeq = 0;
+            for (int i = 0; i < accountCount; i++) {
+                Account a = new Account(store.nextAccountNumber(), "", rnd.nextInt(5_000), "", "");
+                if (journal != null) {
+                    lastSeq = a.opened(journal);
+                }
+                store.put(a);
+            }
+            if (journal != null) {
+                journal.awaitDurable(lastSeq);
+            }
+            int period = period(YearMonth.now());
+            // Untimed pass so both measured runs see compiled code
+            policy.run(store, ++period, ForkJoinPool.commonPool());
+            for (int parallelism : new int[] {1, cores}) {
+                long before = total(store);
+                AtomicInteger running = new AtomicInteger(1);
+                AtomicLong transfers = new AtomicLong();
+                Thread[] tellers = new Thread[2];
+                for (int t = 0; t < tellers.length; t++) {
+                    tellers[t] = new Thread(() -> {
+                        ThreadLocalRandom r = ThreadLocalRandom.current();
+                        while (running.get() == 1) {
+                            Account from = store.get(AccountStore.FIRST_ACCOUNT_NUMBER + r.nextInt(accountCount));
+                            Account to = store.get(AccountStore.FIRST_ACCOUNT_NUMBER + r.nextInt(accountCount));
+                            if (Ledger.post(from, to, 1 + r.nextInt(1_000)) >= 0) {
+                                transfers.incrementAndGet();
+                            }
+                        }
+                    });
+                    tellers[t].start();
+                }
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                Report report = policy.run(store, ++period, pool);
+                pool.shutdown();
+                running.set(0);
+                for (Thread t : tellers) {
+                    try {
+                        t.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                long drift = total(store) - (before + report.interest.sum() - report.fees.sum());
+                System.out.printf("journal=%s threads=%d accounts/sec=%.0f accrued=%d concurrentTransfers=%d drift(minor units)=%d%n",
+                        journaled, parallelism, report.accountsPerSecond(), report.accrued.sum(), transfers.get(), drift);
+            }
+            if (storage != null) {
+                storage.close();
+                for (File f : dir.listFiles()) {
+                    f.delete();
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    private static long total(AccountStore store) {
+        long[] sum = new long[1];
+        store.forEach(a -> sum[0] += a.getBalance());
+        return sum[0];
+    }
+}
+
+/*
+ * Append-only, checksummed log of every balance and contact change, split into segment
+ * files named by their first sequence number. Record layout:
+ *   int length, int crc32, long seq, byte type, body
+ * where length and crc cover everything from seq to the end of the body.
+ *
+ * Callers append while holding the affected accounts' locks and then wait for durability
+ * outside them. With group commit on, the first waiter writes and fsyncs everything
+ * appended so far, so concurrent transactions share one fsync.
+ */
+class TransactionJournal {
+    public static final byte OPEN = 1;
+    public static final byte DEPOSIT = 2;
+    public static final byte WITHDRAW = 3;
+    public static final byte TRANSFER = 4;
+    public static final byte CONTACT = 5;
+    // Interest and fee records carry the accrual period (yyyymm) in otherAccount
+    public static final byte INTEREST = 6;
+    public static final byte FEE = 7;
+    // Written once a period's accrual has covered every account
+    public static final byte ACCRUAL = 8;
+    static final Metrics.Timer FLUSH_TIME = Metrics.timer("bank.journal.flush");
+
+    private final File dir;
+    private final boolean groupCommit;
+    private final CRC32 crc = new CRC32();
+    private final Object flushLock = new Object();
+    private FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private long nextSeq;
+    private volatile long durableSeq;
+    private volatile long recordsSinceRotate;
+    // Set by the first failed write; from then on nothing can be made durable, so every
+    // append and wait fails rather than report records durable that never reached disk
+    private volatile IOException failure;
+
+    public TransactionJournal(File dir, long firstSeq, boolean groupCommit) throws IOException {
+        this.dir = dir;
+        this.groupCommit = groupCommit;
+        this.nextSeq = firstSeq;
+        this.durableSeq = firstSeq - 1;
+        openSegment();
+    }
+
+    static final class Record {
+        long seq;
+        byte type;
+        int account;
+        int otherAccount;
+        long amount;
+        String name;
+        String email;
+        String phone;
+    }
+
+    interface Replayer {
+        void apply(Record r);
+    }
+
+    public long recordsSinceRotate() {
+        return recordsSinceRotate;
+    }
+
+    public long append(byte type, int account, int otherAccount, long amount) {
+        return append(type, account, otherAccount, amount, null, null, null);
+    }
+
+    public long appendOpen(int account, long balance, String name, String email, String phone) {
+        return append(OPEN, account, 0, balance, name, email, phone);
+    }
+
+    public long appendContact(int account, String email, String phone) {
+        return append(CONTACT, account, 0, 0, null, email, phone);
+    }
+
+    private synchronized long append(byte type, int account, int otherAccount, long amount,
+                                     String name, String email, String phone) {
+        checkFailed();
+        byte[] n = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+        byte[] e = email == null ? null : email.getBytes(StandardCharsets.UTF_8);
+        byte[] p = phone == null ? null : phone.getBytes(StandardCharsets.UTF_8);
+        int size = 8 + 8 + 1 + 4 + 4 + 8 + strSize(n) + strSize(e) + strSize(p);
+        if (pending.remaining() < size) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + size));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        long seq = nextSeq++;
+        int start = pending.position();
+        pending.putInt(0).putInt(0).putLong(seq).put(type).putInt(account).putInt(otherAccount).putLong(amount);
+        putStr(n);
+        putStr(e);
+        putStr(p);
+        int length = pending.position() - start - 8;
+        crc.reset();
+        crc.update(pending.array(), start + 8, length);
+        pending.putInt(start, length).putInt(start + 4, (int) crc.getValue());
+        recordsSinceRotate++;
+        if (!groupCommit) {
+            flushPending();
+        }
+        return seq;
+    }
+
+    private static int strSize(byte[] b) {
+        return 4 + (b == null ? 0 : b.length);
+    }
+
+    private void putStr(byte[] b) {
+        if (b == null) {
+            pending.putInt(-1);
+        } else {
+            pending.putInt(b.length).put(b);
+        }
+    }
+
+    private void checkFailed() {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException("Journal failed earlier", e);
+        }
+    }
+
+    // Must hold this journal's monitor
+    private void flushPending() {
+        checkFailed();
+        try {
+            long start = System.nanoTime();
+            pending.flip();
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            channel.force(false);
+            FLUSH_TIME.stop(start);
+            pending.clear();
+            durableSeq = nextSeq - 1;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Journal write failed", e);
+        }
+    }
+
+    public void awaitDurable(long seq) {
+        if (durableSeq >= seq) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (durableSeq >= seq) {
+                return;
+            }
+            checkFailed();
+            ByteBuffer batch;
+            long upTo;
+            FileChannel ch;
+            synchronized (this) {
+                batch = pending;
+                pending = spare;
+                upTo = nextSeq - 1;
+                ch = channel;
+            }
+            try {
+                long start = System.nanoTime();
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    ch.write(batch);
+                }
+                ch.force(false);
+                FLUSH_TIME.stop(start);
+            } catch (IOException e) {
+                // The batch is not handed back as the spare, so nothing appended later reuses it
+                synchronized (this) {
+                    failure = e;
+                    spare = ByteBuffer.allocate(batch.capacity());
+                }
+                throw new UncheckedIOException("Journal write failed", e);
+            }
+            batch.clear();
+            synchronized (this) {
+                spare = batch;
+            }
+            durableSeq = upTo;
+        }
+    }
+
+    // Starts a new segment; every record with a lower sequence number is already applied
+    public long rotate() throws IOException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                flushPending();
+                channel.close();
+                openSegment();
+                recordsSinceRotate = 0;
+                return nextSeq;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                try {
+                    flushPending();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        File f = new File(dir, segmentName(nextSeq));
+        channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    static String segmentName(long firstSeq) {
+        return String.format("bank-%016d.journal", firstSeq);
+    }
+
+    static File[] segments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("bank-") && name.endsWith(".journal"));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    static long firstSeq(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(5, name.length() - 8));
+    }
+
+    /*
+     * Replays every intact record. A torn or corrupt record in the newest segment is the
+     * tail of an interrupted write: the segment is truncated there so new records are not
+     * appended behind it. The same in an older segment means records after it are missing,
+     * so recovery stops with an error rather than replay around the gap.
+     */
+    static long replay(File dir, Replayer replayer) throws IOException {
+        long lastSeq = -1;
+        Record r = new Record();
+        CRC32 check = new CRC32();
+        File[] files = segments(dir);
+        for (int s = 0; s < files.length; s++) {
+            File f = files[s];
+            long valid = 0;
+            boolean torn = false;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16))) {
+                byte[] body = new byte[256];
+                while (true) {
+                    int length;
+                    int expected;
+                    try {
+                        length = in.readInt();
+                        expected = in.readInt();
+                    } catch (EOFException eof) {
+                        torn = valid < f.length();
+                        break;
+                    }
+                    if (length < 33 || length > (1 << 20)) {
+                        torn = true;
+                        break;
+                    }
+                    if (body.length < length) {
+                        body = new byte[length];
+                    }
+                    try {
+                        in.readFully(body, 0, length);
+                    } catch (EOFException eof) {
+                        torn = true;
+                        break;
+                    }
+                    check.reset();
+                    check.update(body, 0, length);
+                    if ((int) check.getValue() != expected) {
+                        torn = true;
+                        break;
+                    }
+                    ByteBuffer b = ByteBuffer.wrap(body, 0, length);
+                    r.seq = b.getLong();
+                    r.type = b.get();
+                    r.account = b.getInt();
+                    r.otherAccount = b.getInt();
+                    r.amount = b.getLong();
+                    r.name = getStr(b);
+                    r.email = getStr(b);
+                    r.phone = getStr(b);
+                    replayer.apply(r);
+                    lastSeq = Math.max(lastSeq, r.seq);
+                    valid += 8 + length;
+                }
+            }
+            if (!torn) {
+                continue;
+            }
+            if (s < files.length - 1) {
+                throw new IOException("Journal " + f.getName() + " is corrupt at byte " + valid
+                        + " and later segments follow it; not replaying past the gap");
+            }
+            System.out.println("Journal " + f.getName() + " has a torn tail; truncating it at byte " + valid);
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(valid);
+                ch.force(true);
+            }
+        }
+        return lastSeq;
+    }
+
+    private static String getStr(ByteBuffer b) {
+        int len = b.getInt();
+        if (len < 0) {
+            return null;
+        }
+        String s = new String(b.array(), b.arrayOffset() + b.position(), len, StandardCharsets.UTF_8);
+        b.position(b.position() + len);
+        return s;
+    }
+}
+
+/*
+ * Owns the on-disk state: a snapshot of every account plus the journal segments written
+ * since. Recovery loads the snapshot and replays the segments over it; a background task
+ * takes a new snapshot once enough records accumulate and drops the segments it covers.
+ * Version 2 snapshots add the last completed accrual period and each account's own.
+ */
+class BankStorage {
+    static final int SNAPSHOT_MAGIC = 0x424E4B53; // "BNKS"
+    static final int SNAPSHOT_VERSION = 2;
+    static final Metrics.Timer SNAPSHOT_TIME = Metrics.timer("bank.snapshot");
+    static final long SNAPSHOT_EVERY = 100_000;
+
+    private final File dir;
+    private final AccountStore accounts;
+    private final TransactionJournal journal;
+    private final ScheduledExecutorService snapshotter;
+    private final Object accrualLock = new Object();
+    // Last month (yyyymm) whose accrual covered every account
+    private volatile int accruedPeriod;
+    private ScheduledExecutorService accrualScheduler;
+
+    private BankStorage(File dir, AccountStore accounts, TransactionJournal journal, int accruedPeriod) {
+        this.dir = dir;
+        this.accounts = accounts;
+        this.journal = journal;
+        this.accruedPeriod = accruedPeriod;
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bank-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            if (journal.recordsSinceRotate() >= SNAPSHOT_EVERY) {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    System.out.println("Snapshot failed: " + e.getMessage());
+                }
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public static BankStorage open(File dir, boolean groupCommit) throws IOException {
+        dir.mkdirs();
+        AccountStore accounts = new AccountStore();
+        long nextSeq = 1;
+        int[] accrued = new int[1];
+        File snap = new File(dir, "bank.snapshot");
+        if (snap.exists()) {
+            nextSeq = readSnapshot(snap, accounts, accrued);
+        }
+        long last = TransactionJournal.replay(dir, r -> {
+            if (r.type == TransactionJournal.ACCRUAL) {
+                accrued[0] = Math.max(accrued[0], r.otherAccount);
+            } else {
+                apply(accounts, r);
+            }
+        });
+        nextSeq = Math.max(nextSeq, last + 1);
+        // New and version 1 stores owe nothing for months before this one
+        if (accrued[0] == 0) {
+            accrued[0] = Accrual.period(YearMonth.now().minusMonths(1));
+        }
+        TransactionJournal journal = new TransactionJournal(dir, nextSeq, groupCommit);
+        accounts.setJournal(journal);
+        accounts.forEach(a -> a.attach(journal));
+        BankStorage storage = new BankStorage(dir, accounts, journal, accrued[0]);
+        storage.snapshot();
+        return storage;
+    }
+
+    private static void apply(AccountStore accounts, TransactionJournal.Record r) {
+        Account a = accounts.get(r.account);
+        switch (r.type) {
+            case TransactionJournal.OPEN:
+                if (a == null) {
+                    accounts.put(Account.replayOpen(r.account, r.amount, r.name, r.email, r.phone, r.seq));
+                }
+                break;
+            case TransactionJournal.DEPOSIT:
+                if (a != null) {
+                    a.replay(r.amount, r.seq);
+                }
+                break;
+            case TransactionJournal.WITHDRAW:
+                if (a != null) {
+                    a.replay(-r.amount, r.seq);
+                }
+                break;
+            case TransactionJournal.TRANSFER:
+                Account to = accounts.get(r.otherAccount);
+                if (a != null) {
+                    a.replay(-r.amount, r.seq);
+                }
+                if (to != null) {
+                    to.replay(r.amount, r.seq);
+                }
+                break;
+            case TransactionJournal.CONTACT:
+                if (a != null) {
+                    a.replayContact(r.email, r.phone, r.seq);
+                }
+                break;
+            case TransactionJournal.INTEREST:
+                if (a != null) {
+                    a.replayAccrual(r.amount, r.otherAccount, r.seq);
+                }
+                break;
+            case TransactionJournal.FEE:
+                if (a != null) {
+                    a.replayAccrual(-r.amount, r.otherAccount, r.seq);
+                }
+                break;
+        }
+    }
+
+    public AccountStore accounts() {
+        return accounts;
+    }
+
+    public int accruedPeriod() {
+        return accruedPeriod;
+    }
+
+    /*
+     * Runs one month's accrual over every account and then journals the month as done.
+     * Accounts remember the month they were last accrued for, so a run cut short by a crash
+     * is simply repeated: accounts it already reached are skipped. Returns null if the
+     * month was already complete.
+     */
+    public Accrual.Report accrue(Accrual policy, int period) {
+        synchronized (accrualLock) {
+            if (period <= accruedPeriod) {
+                return null;
+            }
+            Accrual.Report report = policy.run(accounts, period, ForkJoinPool.commonPool());
+            journal.awaitDurable(journal.append(TransactionJournal.ACCRUAL, 0, period, 0));
+            accruedPeriod = period;
+            return report;
+        }
+    }
+
+    // Accrues every month that has ended since the last completed run, oldest first
+    public List<Accrual.Report> accrueDue(Accrual policy) {
+        List<Accrual.Report> reports = new ArrayList<>();
+        YearMonth last = YearMonth.now().minusMonths(1);
+        for (YearMonth m = Accrual.month(accruedPeriod).plusMonths(1); !m.isAfter(last); m = m.plusMonths(1)) {
+            Accrual.Report report = accrue(policy, Accrual.period(m));
+            if (report != null) {
+                reports.add(report);
+            }
+        }
+        return reports;
+    }
+
+    // Checks hourly for a month that has ended; runs off the snapshot thread so snapshots continue during a run
+    public void scheduleAccrual(Accrual policy) {
+        accrualScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bank-accrual");
+            t.setDaemon(true);
+            return t;
+        });
+        accrualScheduler.scheduleWithFixedDelay(() -> {
+            for (Accrual.Report report : accrueDue(policy)) {
+                report.print();
+            }
+        }, 0, 1, TimeUnit.HOURS);
+    }
+
+    /*
+     * Rotating first means every record in the older segments was applied before the
+     * snapshot starts, so the snapshot covers them and they can be deleted afterwards.
+     * Accounts are read one at a time under their own lock; records that land in the new
+     * segment while the snapshot runs are filtered on replay by each account's lastSeq.
+     */
+    public synchronized void snapshot() throws IOException {
+        long start = System.nanoTime();
+        long startSeq = journal.rotate();
+        File tmp = new File(dir, "bank.snapshot.tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fos, crc), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(startSeq);
+            out.writeInt(accruedPeriod);
+            IOException[] failure = new IOException[1];
+            accounts.forEach(a -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    out.writeBoolean(true);
+                    a.writeTo(out);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.writeBoolean(false);
+            out.flush();
+            new DataOutputStream(fos).writeLong(crc.getValue());
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), new File(dir, "bank.snapshot").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (File f : TransactionJournal.segments(dir)) {
+            if (TransactionJournal.firstSeq(f) < startSeq) {
+                f.delete();
+            }
+        }
+        SNAPSHOT_TIME.stop(start);
+    }
+
+    private static long readSnapshot(File snap, AccountStore accounts, int[] accrued) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileInputStream fis = new FileInputStream(snap)) {
+            BufferedInputStream buffered = new BufferedInputStream(fis, 1 << 16);
+            DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+            if (version < 1 || version > SNAPSHOT_VERSION) {
+                throw new IOException("Not a bank snapshot: " + snap);
+            }
+            long startSeq = in.readLong();
+            if (version >= 2) {
+                accrued[0] = in.readInt();
+            }
+            while (in.readBoolean()) {
+                accounts.put(Account.readFrom(in, version));
+            }
+            long expected = crc.getValue();
+            // The trailing checksum is read around the checked stream
+            if (new DataInputStream(buffered).readLong() != expected) {
+                throw new IOException("Bank snapshot checksum mismatch: " + snap);
+            }
+            return startSeq;
+        }
+    }
+
+    public void close() throws IOException {
+        snapshotter.shutdownNow();
+        if (accrualScheduler != null) {
+            accrualScheduler.shutdownNow();
+        }
+        synchronized (accrualLock) {
+            journal.close();
+        }
+    }
+
+    // Concurrent deposits with group commit on and off: commit latency and throughput
+    public static void benchmark(int threads, int opsPerThread) throws IOException {
+        for (boolean group : new boolean[] {false, true}) {
+            File dir = Files.createTempDirectory("bank-bench").toFile();
+            BankStorage storage = open(dir, group);
+            Account[] accounts = new Account[threads];
+            for (int i = 0; i < threads; i++) {
+                accounts[i] = storage.accounts().open("Bench " + i, 0, "", "");
+            }
+            long[][] latencies = new long[threads][opsPerThread];
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                final int id = t;
+                workers[t] = new Thread(() -> {
+                    Account a = accounts[id];
+                    TransactionJournal j = a.getJournal();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        long start = System.nanoTime();
+                        long seq;
+                        synchronized (a) {
+                            a.credit(100);
+                            seq = j.append(TransactionJournal.DEPOSIT, a.getAccountNumber(), 0, 100);
+                            a.applied(seq);
+                        }
+                        j.awaitDurable(seq);
+                        latencies[id][i] = System.nanoTime() - start;
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread w : workers) {
+                w.start();
+            }
+            for (Thread w : workers) {
+                try {
+                    w.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            double secs = (System.nanoTime() - start) / 1e9;
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("groupCommit=%s threads=%d commits/sec=%.0f p50=%.1fus p99=%.1fus%n",
+                    group, threads, all.length / secs, all[all.length / 2] / 1e3, all[(int) (all.length * 0.99)] / 1e3);
+            storage.close();
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+}
+
+class UserInterface {
+    private final AccountStore accounts;
+    // Null when running without on-disk storage
+    private final BankStorage storage;
+    private final Scanner scanner;
+
+    public UserInterface(AccountStore accounts) {
+        this(accounts, null);
+    }
+
+    public UserInterface(AccountStore accounts, BankStorage storage) {
+        this.accounts = accounts;
+        this.storage = storage;
+        scanner = new Scanner(System.in);
+    }
+
+    public void mainMenu() {
+        while (true) {
+            System.out.println("\n===== Banking Application Menu =====");
+            System.out.println("1. Create New Account");
+            System.out.println("2. Deposit Money");
+            System.out.println("3. Withdraw Money");
+            System.out.println("4. View Account Details");
+            System.out.println("5. Update Contact Details");
+            System.out.println("6. Transfer Money");
+            System.out.println("7. Process Batch File");
+            System.out.println("8. Find Account by Email/Phone");
+            System.out.println("9. Account Statement");
+            System.out.println("10. Metrics");
+            System.out.println("11. Apply Interest and Fees");
+            System.out.println("12. Exit");
+            System.out.print("Enter your choice: ");
+
+            int choice = readInt();
+
+            switch (choice) {
+                case 1:
+                    createAccount();
+                    break;
+                case 2:
+                    performDeposit();
+                    break;
+                case 3:
+                    performWithdrawal();
+                    break;
+                case 4:
+                    showAccountDetails();
+                    break;
+                case 5:
+                    updateContact();
+                    break;
+                case 6:
+                    performTransfer();
+                    break;
+                case 7:
+                    processBatchFile();
+                    break;
+                case 8:
+                    findByContact();
+                    break;
+                case 9:
+                    showStatement();
+                    break;
+                case 10:
+                    Metrics.dump(System.out);
+                    break;
+                case 11:
+                    applyAccrual();
+                    break;
+                case 12:
+                    System.out.println("Thank you for using our Banking Application. Goodbye!");
+                    return;
+                default:
+                    System.out.println("Invalid option. Please try again.");
+            }
+        }
+    }
+
+    private void createAccount() {
+        System.out.print("Enter Account Holder Name: ");
+        String name = scanner.nextLine().trim();
+        scanner.nextLine();
+
+        System.out.print("Enter Initial Deposit Amount: ");
+        double deposit = readDouble();
+        if (Money.toMinor(deposit) < 0) {
+            System.out.println("Invalid deposit amount. Please enter a value from 0 up to ₹" + Money.format(Money.MAX_MINOR) + ".");
+            return;
+        }
+
+        System.out.print("Enter Email Address: ");
+        String email = scanner.nextLine().trim();
+
+        System.out.print("Enter Phone Number: ");
+        String phone = scanner.nextLine().trim();
+
+        Account newAccount = accounts.open(name, deposit, email, phone);
+
+        System.out.println("Account created successfully! Account Number: " + newAccount.getAccountNumber());
+    }
+
+    private void performDeposit() {
+        Account account = findAccount();
+        if (account != null) {
+            System.out.print("Enter amount to deposit: ");
+            double amount = readDouble();
+            account.deposit(amount);
+        }
+    }
+
+    private void performWithdrawal() {
+        Account account = findAccount();
+        if (account != null) {
+            System.out.print("Enter amount to withdraw: ");
+            double amount = readDouble();
+            account.withdraw(amount);
+        }
+    }
+
+    private void performTransfer() {
+        System.out.println("From:");
+        Account from = findAccount();
+        if (from == null) {
+            return;
+        }
+        System.out.println("To:");
+        Account to = findAccount();
+        if (to == null) {
+            return;
+        }
+        System.out.print("Enter amount to transfer: ");
+        double amount = readDouble();
+        switch (Ledger.transfer(from, to, Money.toMinor(amount))) {
+            case Ledger.OK:
+                System.out.println("Transfer successful. New balance: ₹" + Money.format(from.getBalance()));
+                break;
+            case Ledger.INSUFFICIENT_FUNDS:
+                System.out.println("Insufficient balance.");
+                break;
+            case Ledger.SAME_ACCOUNT:
+                System.out.println("Cannot transfer to the same account.");
+                break;
+            case Ledger.BALANCE_LIMIT:
+                System.out.println("Transfer rejected: the receiving balance would exceed the maximum.");
+                break;
+            default:
+                System.out.println("Invalid transfer amount. Please enter a positive value.");
+        }
+    }
+
+    private void processBatchFile() {
+        System.out.print("Enter batch file path: ");
+        String path = scanner.nextLine().trim();
+        if (path.isEmpty()) {
+            path = scanner.nextLine().trim();
+        }
+        long start = System.nanoTime();
+        byte[] results;
+        try (InputStream in = new FileInputStream(path)) {
+            results = new BatchProcessor(accounts).process(in, 1 << 16);
+        } catch (IOException e) {
+            System.out.println("Could not read batch file: " + e.getMessage());
+            return;
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+        int[] counts = new int[BatchProcessor.STATUS_NAMES.length];
+        for (byte r : results) {
+            counts[r]++;
+        }
+        System.out.printf("Processed %d commands in %.3fs.%n", results.length, secs);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                System.out.println("  " + BatchProcessor.STATUS_NAMES[i] + ": " + counts[i]);
+            }
+        }
+    }
+
+    private void applyAccrual() {
+        if (storage == null) {
+            System.out.println("Interest and fees need on-disk storage.");
+            return;
+        }
+        List<Accrual.Report> reports = storage.accrueDue(Accrual.STANDARD);
+        if (reports.isEmpty()) {
+            System.out.println("Interest and fees are already applied through " + Accrual.month(storage.accruedPeriod()) + ".");
+        }
+        for (Accrual.Report report : reports) {
+            report.print();
+        }
+    }
+
+    private void findByContact() {
+        System.out.print("Enter Email Address or Phone Number: ");
+        String query = scanner.nextLine().trim();
+        if (query.isEmpty()) {
+            query = scanner.nextLine().trim();
+        }
+        List<Account> found = query.contains("@") ? accounts.findByEmail(query) : accounts.findByPhone(query);
+        if (found.isEmpty()) {
+            System.out.println("No matching account found.");
+        }
+        for (Account account : found) {
+            account.displayAccountDetails();
+        }
+    }
+
+    private void showStatement() {
+        Account account = findAccount();
+        if (account == null) {
+            return;
+        }
+        LocalDate from;
+        LocalDate to;
+        try {
+            System.out.print("From date (yyyy-mm-dd): ");
+            from = LocalDate.parse(scanner.nextLine().trim());
+            System.out.print("To date (yyyy-mm-dd, inclusive): ");
+            to = LocalDate.parse(scanner.nextLine().trim());
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date.");
+            return;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long fromMillis = from.atStartOfDay(zone).toInstant().toEpochMilli();
+        long toMillis = to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        System.out.println("\n------ Statement for " + account.getAccountNumber() + " ------");
+        try {
+            account.statement(fromMillis, toMillis, (time, type, amount, balanceAfter) ->
+                System.out.println(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), zone).withNano(0)
+                        + "  " + AccountHistory.TYPE_NAMES[type]
+                        + "  ₹" + Money.format(amount) + "  Balance: ₹" + Money.format(balanceAfter)));
+        } catch (IOException e) {
+            System.out.println("Could not read statement: " + e.getMessage());
+        }
+        System.out.println("-----------------------------");
+    }
+
+    private void showAccountDetails() {
+        Account account = findAccount();
+        if (account != null) {
+            account.displayAccountDetails();
+        }
+    }
+
+    private void updateContact() {
+        Account account = findAccount();
+        if (account != null) {
+            System.out.print("Enter new Email Address: ");
+            String email = scanner.nextLine().trim();
+            System.out.print("Enter new Phone Number: ");
+            String phone = scanner.nextLine().trim();
+            account.updateContactDetails(email, phone);
+        }
+    }
+
+    // Utility methods for input and searching accounts
+    private int readInt() {
+        while (!scanner.hasNextInt()) {
+            System.out.print("Invalid input. Please enter a number: ");
+            scanner.next(); // discard invalid input
+        }
+        return scanner.nextInt();
+    }
+
+    private double readDouble() {
+        while (!scanner.hasNextDouble()) {
+            System.out.print("Invalid input. Please enter a valid amount: ");
+            scanner.next(); // discard invalid input
+        }
+        double value = scanner.nextDouble();
+        scanner.nextLine(); // consume newline
+        return value;
+    }
+
+    private Account findAccount() {
+        System.out.print("Enter Account Number: ");
+        int accNum = readInt();
+        scanner.nextLine(); // consume newline
+        Account account = accounts.get(accNum);
+        if (account == null) {
+            System.out.println("Account not found.");
+        }
+        return account;
+    }
+}
+
+class BankingApp {
+    public static void main(String[] args) {
+        if (args.length > 1 && args[0].equals("bench")) {
+            switch (args[1]) {
+                case "ledger":
+                    Ledger.benchmark(10_000, 2_000_000);
+                    return;
+                case "lookup":
+                    AccountStore.benchmark(10_000_000);
+                    return;
+                case "batch":
+                    BatchProcessor.benchmark(100_000, 1 << 16, 100);
+                    return;
+                case "accrual":
+                    try {
+                        Accrual.benchmark(args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000);
+                        Metrics.dump(System.out);
+                    } catch (IOException e) {
+                        System.out.println("Benchmark failed: " + e.getMessage());
+                    }
+                    return;
+                case "commit":
+                    try {
+                        BankStorage.benchmark(16, 2_000);
+                        Metrics.dump(System.out);
+                    } catch (IOException e) {
+                        System.out.println("Benchmark failed: " + e.getMessage());
+                    }
+                    return;
+                default:
+                    System.out.println("Unknown benchmark: " + args[1]);
+                    return;
+            }
+        }
+        BankStorage storage;
+        try {
+            storage = BankStorage.open(new File("bank-data"), true);
+        } catch (IOException e) {
+            System.out.println("Could not open bank data: " + e.getMessage());
+            return;
+        }
+        storage.scheduleAccrual(Accrual.STANDARD);
+        UserInterface ui = new UserInterface(storage.accounts(), storage);
+        ui.mainMenu();
+        try {
+            storage.close();
+        } catch (IOException e) {
+            System.out.println("Could not close bank data: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
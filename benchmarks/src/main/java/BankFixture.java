@@ -0,0 +1,53 @@
+import bench.BankWorkload;
+import java.util.List;
+
+// In-memory AccountStore, as UserInterface sees it, for the JMH suite in the bench package
+public class BankFixture implements BankWorkload {
+    private AccountStore accounts;
+
+    @Override
+    public void setUp(int count) {
+        accounts = new AccountStore();
+        for (int i = 0; i < count; i++) {
+            accounts.open("Holder " + i, 1000, "holder" + i + "@example.com", String.valueOf(9000000000L + i));
+        }
+    }
+
+    @Override
+    public int firstAccount() {
+        return AccountStore.FIRST_ACCOUNT_NUMBER;
+    }
+
+    @Override
+    public long findAccount(int number) {
+        Account a = accounts.get(number);
+        return a == null ? -1 : a.getBalance();
+    }
+
+    @Override
+    public int findByEmail(int number) {
+        List<Account> found = accounts.findByEmail("holder" + (number - AccountStore.FIRST_ACCOUNT_NUMBER) + "@example.com");
+        return found.size();
+    }
+
+    @Override
+    public long deposit(int number, long minor) {
+        Account a = accounts.get(number);
+        synchronized (a) {
+            a.depositMinor(minor);
+            return a.getBalance();
+        }
+    }
+
+    @Override
+    public long withdraw(int number, long minor) {
+        Account a = accounts.get(number);
+        synchronized (a) {
+            // Keep the account funded so every call takes the debit path
+            if (a.getBalance() < minor) {
+                a.depositMinor(100_000);
+            }
+            return a.withdrawMinor(minor);
+        }
+    }
+}
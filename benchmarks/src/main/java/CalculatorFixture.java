@@ -0,0 +1,76 @@
+import bench.CalculatorWorkload;
+import java.util.Random;
+
+// Calculator scalar, bulk and formula operations for the JMH suite in the bench package
+public class CalculatorFixture implements CalculatorWorkload {
+    private final Calculator calc = new Calculator();
+    private final Expression formula = Expression.compile("fee * (1 + rate / 100) ^ years - discount");
+    private final double[] vars = {1000, 7.5, 3, 50};
+    private double[] a, b;
+    private long[] la, lb, lout;
+    private boolean[] zero;
+
+    @Override
+    public void setUp(int elements) {
+        Random rnd = new Random(1);
+        a = new double[elements];
+        b = new double[elements];
+        la = new long[elements];
+        lb = new long[elements];
+        lout = new long[elements];
+        zero = new boolean[elements];
+        for (int i = 0; i < elements; i++) {
+            a[i] = rnd.nextDouble();
+            b[i] = rnd.nextInt(8);
+            la[i] = rnd.nextInt(1000);
+            lb[i] = rnd.nextInt(8);
+        }
+    }
+
+    @Override
+    public double add(double x, double y) {
+        return calc.add(x, y, 0);
+    }
+
+    @Override
+    public double multiply(double x, double y) {
+        return calc.multiply(x, y);
+    }
+
+    @Override
+    public int divide(int x, int y) {
+        return calc.divide(x, y);
+    }
+
+    @Override
+    public double sum() {
+        return calc.sum(a);
+    }
+
+    @Override
+    public double parallelSum() {
+        return calc.parallelSum(a);
+    }
+
+    @Override
+    public double dot() {
+        return calc.dot(a, b);
+    }
+
+    @Override
+    public int divideMasked() {
+        return calc.divide(la, lb, lout, zero);
+    }
+
+    @Override
+    public double evaluate(double x) {
+        vars[0] = x;
+        return formula.evaluate(vars);
+    }
+
+    @Override
+    public double evaluateTree(double x) {
+        vars[0] = x;
+        return formula.evaluateTree(vars);
+    }
+}
@@ -0,0 +1,71 @@
+import bench.LibraryWorkload;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// Drives LibrarySystem.LibraryManager for the JMH suite in the bench package
+public class LibraryFixture implements LibraryWorkload {
+    static final String[] WORDS = {
+            "river", "shadow", "garden", "empire", "silent", "winter", "glass", "ocean",
+            "machine", "forest", "letters", "history", "stone", "night", "city", "dream",
+            "physics", "island", "journey", "secret", "fire", "memory", "road", "north",
+            "algebra", "kingdom", "paper", "storm", "light", "mountain", "song", "harbor"};
+
+    LibrarySystem.LibraryManager lib;
+    File dir;
+
+    @Override
+    public void setUp(int books, File dir) throws IOException {
+        this.dir = dir;
+        File csv = new File(dir, "catalog.csv");
+        Random rnd = new Random(7);
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8), 1 << 16)) {
+            for (int i = 0; i < books; i++) {
+                w.write(WORDS[rnd.nextInt(WORDS.length)] + " " + WORDS[rnd.nextInt(WORDS.length)] + " " + i);
+                w.write(",Author " + rnd.nextInt(books / 10 + 1) + "," + WORDS[rnd.nextInt(8)] + "\n");
+            }
+        }
+        lib = new LibrarySystem.LibraryManager(dir);
+        lib.importCatalog(csv);
+        csv.delete();
+    }
+
+    @Override
+    public String[] searchTerms() {
+        return WORDS.clone();
+    }
+
+    @Override
+    public int search(String query) {
+        return lib.find(query).size();
+    }
+
+    @Override
+    public int sortPage(String from, int pageSize) {
+        return lib.titles(from, null, 0, pageSize).size();
+    }
+
+    @Override
+    public boolean saveData() {
+        return lib.saveData();
+    }
+
+    @Override
+    public int loadData() {
+        LibrarySystem.LibraryManager loaded = new LibrarySystem.LibraryManager(dir);
+        loaded.awaitIndex();
+        int n = loaded.books.size();
+        loaded.close();
+        return n;
+    }
+
+    @Override
+    public void tearDown() {
+        lib.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+}
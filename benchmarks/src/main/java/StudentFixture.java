@@ -0,0 +1,56 @@
+import bench.StudentWorkload;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+// The in-memory and memory-mapped student stores behind ResultManager, for the JMH suite
+public class StudentFixture implements StudentWorkload {
+    private final StudentStore list = new StudentStore();
+    private final MarksTable marks = new MarksTable(3);
+    private ResultsFile store;
+    private File dir;
+
+    @Override
+    public void setUp(int students, File dir) throws IOException {
+        this.dir = dir;
+        store = ResultsFile.open(dir, 3);
+        Random rnd = new Random(7);
+        int[] m = new int[3];
+        for (int roll = 1; roll <= students; roll++) {
+            for (int s = 0; s < m.length; s++) m[s] = rnd.nextInt(101);
+            int row = marks.append(m, 0);
+            list.add(new Student(roll, "Student " + roll, marks, row));
+            store.append(roll, "Student " + roll, m, 0);
+        }
+    }
+
+    @Override
+    public int lookup(int roll) {
+        return list.get(roll).getRow();
+    }
+
+    @Override
+    public int mappedLookup(int roll) {
+        return store.find(roll);
+    }
+
+    @Override
+    public double average(int roll) {
+        return marks.average(list.get(roll).getRow());
+    }
+
+    @Override
+    public double classMean(boolean parallel) {
+        return marks.stats(0, parallel).mean;
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        store.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+}
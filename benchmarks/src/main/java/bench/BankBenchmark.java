@@ -0,0 +1,56 @@
+package bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx16g"})
+public class BankBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    BankWorkload bank;
+    int[] numbers;
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bank = Fixtures.load("BankFixture", BankWorkload.class);
+        bank.setUp(size);
+        // Random account numbers, precomputed so the RNG stays out of the measurement
+        numbers = new int[1 << 16];
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = bank.firstAccount() + rnd.nextInt(size);
+        }
+    }
+
+    private int next() {
+        return numbers[cursor++ & (numbers.length - 1)];
+    }
+
+    @Benchmark
+    public long findAccount() {
+        return bank.findAccount(next());
+    }
+
+    @Benchmark
+    public int findByEmail() {
+        return bank.findByEmail(next());
+    }
+
+    @Benchmark
+    public long deposit() {
+        return bank.deposit(next(), 125);
+    }
+
+    @Benchmark
+    public long withdraw() {
+        return bank.withdraw(next(), 125);
+    }
+}
@@ -0,0 +1,17 @@
+package bench;
+
+public interface BankWorkload {
+    void setUp(int accounts);
+
+    // Account numbers are firstAccount() .. firstAccount() + accounts - 1
+    int firstAccount();
+
+    // The lookup behind UserInterface.findAccount; returns the balance so the lookup cannot be elided
+    long findAccount(int number);
+
+    int findByEmail(int number);
+
+    long deposit(int number, long minor);
+
+    long withdraw(int number, long minor);
+}
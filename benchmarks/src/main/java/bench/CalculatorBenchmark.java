@@ -0,0 +1,82 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx16g"})
+public class CalculatorBenchmark {
+    CalculatorWorkload calc;
+    double x = 1.5, y = 2.5;
+    int p = 1_000_003, q = 7;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        calc = Fixtures.load("CalculatorFixture", CalculatorWorkload.class);
+        calc.setUp(0);
+    }
+
+    // Only the bulk operations depend on the array length
+    @State(Scope.Benchmark)
+    public static class Arrays {
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        int size;
+
+        CalculatorWorkload calc;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            calc = Fixtures.load("CalculatorFixture", CalculatorWorkload.class);
+            calc.setUp(size);
+        }
+    }
+
+    @Benchmark
+    public double add() {
+        return calc.add(x, y);
+    }
+
+    @Benchmark
+    public double multiply() {
+        return calc.multiply(x, y);
+    }
+
+    @Benchmark
+    public int divide() {
+        return calc.divide(p, q);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return calc.evaluate(x);
+    }
+
+    @Benchmark
+    public double evaluateTree() {
+        return calc.evaluateTree(x);
+    }
+
+    @Benchmark
+    public double sum(Arrays a) {
+        return a.calc.sum();
+    }
+
+    @Benchmark
+    public double parallelSum(Arrays a) {
+        return a.calc.parallelSum();
+    }
+
+    @Benchmark
+    public double dot(Arrays a) {
+        return a.calc.dot();
+    }
+
+    @Benchmark
+    public int divideMasked(Arrays a) {
+        return a.calc.divideMasked();
+    }
+}
@@ -0,0 +1,23 @@
+package bench;
+
+public interface CalculatorWorkload {
+    void setUp(int elements);
+
+    double add(double a, double b);
+
+    double multiply(double a, double b);
+
+    int divide(int a, int b);
+
+    double sum();
+
+    double parallelSum();
+
+    double dot();
+
+    int divideMasked();
+
+    double evaluate(double x);
+
+    double evaluateTree(double x);
+}
@@ -0,0 +1,20 @@
+package bench;
+
+/*
+ * The programs live in the default package, which named packages cannot import and JMH
+ * refuses to generate code for. Each program therefore gets a small default-package
+ * fixture implementing one of the interfaces here, looked up by name once per trial;
+ * the measured calls are then ordinary monomorphic interface calls.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static <T> T load(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load fixture " + className, e);
+        }
+    }
+}
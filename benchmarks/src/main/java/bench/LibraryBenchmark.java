@@ -0,0 +1,74 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx16g"})
+public class LibraryBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    LibraryWorkload library;
+    File dir;
+    String[] terms;
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("library-bench").toFile();
+        library = Fixtures.load("LibraryFixture", LibraryWorkload.class);
+        library.setUp(size, dir);
+        terms = library.searchTerms();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        library.tearDown();
+    }
+
+    private String nextTerm() {
+        return terms[cursor++ & (terms.length - 1)];
+    }
+
+    @Benchmark
+    public int search() {
+        return library.search(nextTerm());
+    }
+
+    @Benchmark
+    public int searchTwoTerms() {
+        return library.search(nextTerm() + " " + nextTerm());
+    }
+
+    @Benchmark
+    public int sortBooksPage() {
+        return library.sortPage(nextTerm(), 50);
+    }
+
+    // Whole-catalog persistence: one timed call per iteration
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public boolean saveData() {
+        return library.saveData();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int loadData() {
+        return library.loadData();
+    }
+}
@@ -0,0 +1,24 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+
+public interface LibraryWorkload {
+    // Builds a catalog of `books` titles under dir, persisted as a snapshot
+    void setUp(int books, File dir) throws IOException;
+
+    String[] searchTerms();
+
+    // Number of matching books
+    int search(String query);
+
+    // Size of the title page starting at `from`
+    int sortPage(String from, int pageSize);
+
+    boolean saveData();
+
+    // Opens a second manager over dir and waits until its indexes are built; returns its book count
+    int loadData();
+
+    void tearDown();
+}
@@ -0,0 +1,71 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx16g"})
+public class StudentBenchmark {
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    StudentWorkload students;
+    int[] rolls;
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File dir = Files.createTempDirectory("results-bench").toFile();
+        students = Fixtures.load("StudentFixture", StudentWorkload.class);
+        students.setUp(size, dir);
+        rolls = new int[1 << 16];
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int i = 0; i < rolls.length; i++) {
+            rolls[i] = 1 + rnd.nextInt(size);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        students.tearDown();
+    }
+
+    private int next() {
+        return rolls[cursor++ & (rolls.length - 1)];
+    }
+
+    @Benchmark
+    public int lookup() {
+        return students.lookup(next());
+    }
+
+    @Benchmark
+    public int mappedLookup() {
+        return students.mappedLookup(next());
+    }
+
+    @Benchmark
+    public double average() {
+        return students.average(next());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double classStatistics() {
+        return students.classMean(false);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double classStatisticsParallel() {
+        return students.classMean(true);
+    }
+}
@@ -0,0 +1,19 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+
+public interface StudentWorkload {
+    // Rolls 1..students, held both in memory and in the mapped results files under dir
+    void setUp(int students, File dir) throws IOException;
+
+    int lookup(int roll);
+
+    int mappedLookup(int roll);
+
+    double average(int roll);
+
+    double classMean(boolean parallel);
+
+    void tearDown() throws IOException;
+}
@@ -0,0 +1,877 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+class Calculator {
+    public double add(double a, double b, int num3) {
+        return a + b + num3;
+    }
+    public int add(int a, int b, int c) {
+        return a + b + c;
+    }
+    public int subtract(int a, int b) {
+        return a - b;
+    }
+    public double multiply(double a, double b) {
+        return a * b;
+    }
+    public int divide(int a, int b) {
+        if (b == 0) {
+            throw new ArithmeticException("Division by zero is not allowed.");
+        }
+        return a / b;
+    }
+    public void add(double[] a, double[] b, double[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.ADD, a, b, out, 0, a.length);
+    }
+    public void add(int[] a, int[] b, int[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.ADD, a, b, out, 0, a.length);
+    }
+    public void add(long[] a, long[] b, long[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.ADD, a, b, out, 0, a.length);
+    }
+    public void subtract(double[] a, double[] b, double[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.SUB, a, b, out, 0, a.length);
+    }
+    public void subtract(int[] a, int[] b, int[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.SUB, a, b, out, 0, a.length);
+    }
+    public void subtract(long[] a, long[] b, long[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.SUB, a, b, out, 0, a.length);
+    }
+    public void multiply(double[] a, double[] b, double[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.MUL, a, b, out, 0, a.length);
+    }
+    public void multiply(int[] a, int[] b, int[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.MUL, a, b, out, 0, a.length);
+    }
+    public void multiply(long[] a, long[] b, long[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        BulkOps.apply(BulkOps.MUL, a, b, out, 0, a.length);
+    }
+    // Element-wise division; zero divisors yield 0 and a true mask entry. Returns the number of zero divisors.
+    public int divide(double[] a, double[] b, double[] out, boolean[] zero) {
+        BulkOps.check(a.length, b.length, out.length, zero.length);
+        return BulkOps.divide(a, b, out, zero, 0, a.length);
+    }
+    public int divide(int[] a, int[] b, int[] out, boolean[] zero) {
+        BulkOps.check(a.length, b.length, out.length, zero.length);
+        return BulkOps.divide(a, b, out, zero, 0, a.length);
+    }
+    public int divide(long[] a, long[] b, long[] out, boolean[] zero) {
+        BulkOps.check(a.length, b.length, out.length, zero.length);
+        return BulkOps.divide(a, b, out, zero, 0, a.length);
+    }
+    public double sum(double[] a) {
+        return BulkOps.sum(a, 0, a.length);
+    }
+    public long sum(int[] a) {
+        return BulkOps.sum(a, 0, a.length);
+    }
+    public long sum(long[] a) {
+        return BulkOps.sum(a, 0, a.length);
+    }
+    public double product(double[] a) {
+        return BulkOps.product(a, 0, a.length);
+    }
+    // Integer products wrap on overflow, like the sums
+    public long product(int[] a) {
+        return BulkOps.product(a, 0, a.length);
+    }
+    public long product(long[] a) {
+        return BulkOps.product(a, 0, a.length);
+    }
+    public double dot(double[] a, double[] b) {
+        BulkOps.check(a.length, b.length);
+        return BulkOps.dot(a, b, 0, a.length);
+    }
+    public long dot(int[] a, int[] b) {
+        BulkOps.check(a.length, b.length);
+        return BulkOps.dot(a, b, 0, a.length);
+    }
+    public long dot(long[] a, long[] b) {
+        BulkOps.check(a.length, b.length);
+        return BulkOps.dot(a, b, 0, a.length);
+    }
+    public void parallelAdd(double[] a, double[] b, double[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        ForkJoinPool.commonPool().invoke(new BulkOps.ElementTask(BulkOps.ADD, new double[][] {a, b, out}, null, null, 0, a.length));
+    }
+    public void parallelAdd(int[] a, int[] b, int[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        ForkJoinPool.commonPool().invoke(new BulkOps.ElementTask(BulkOps.ADD, null, new int[][] {a, b, out}, null, 0, a.length));
+    }
+    public void parallelAdd(long[] a, long[] b, long[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        ForkJoinPool.commonPool().invoke(new BulkOps.ElementTask(BulkOps.ADD, null, null, new long[][] {a, b, out}, 0, a.length));
+    }
+    public void parallelMultiply(double[] a, double[] b, double[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        ForkJoinPool.commonPool().invoke(new BulkOps.ElementTask(BulkOps.MUL, new double[][] {a, b, out}, null, null, 0, a.length));
+    }
+    public void parallelMultiply(int[] a, int[] b, int[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        ForkJoinPool.commonPool().invoke(new BulkOps.ElementTask(BulkOps.MUL, null, new int[][] {a, b, out}, null, 0, a.length));
+    }
+    public void parallelMultiply(long[] a, long[] b, long[] out) {
+        BulkOps.check(a.length, b.length, out.length);
+        ForkJoinPool.commonPool().invoke(new BulkOps.ElementTask(BulkOps.MUL, null, null, new long[][] {a, b, out}, 0, a.length));
+    }
+    public double parallelSum(double[] a) {
+        return ForkJoinPool.commonPool().invoke(new BulkOps.DoubleReduceTask(a, null, 0, a.length));
+    }
+    public long parallelSum(int[] a) {
+        return ForkJoinPool.commonPool().invoke(new BulkOps.IntReduceTask(a, null, 0, a.length));
+    }
+    public long parallelSum(long[] a) {
+        return ForkJoinPool.commonPool().invoke(new BulkOps.LongReduceTask(a, null, 0, a.length));
+    }
+    public double parallelDot(double[] a, double[] b) {
+        BulkOps.check(a.length, b.length);
+        return ForkJoinPool.commonPool().invoke(new BulkOps.DoubleReduceTask(a, b, 0, a.length));
+    }
+    public long parallelDot(int[] a, int[] b) {
+        BulkOps.check(a.length, b.length);
+        return ForkJoinPool.commonPool().invoke(new BulkOps.IntReduceTask(a, b, 0, a.length));
+    }
+    public long parallelDot(long[] a, long[] b) {
+        BulkOps.check(a.length, b.length);
+        return ForkJoinPool.commonPool().invoke(new BulkOps.LongReduceTask(a, b, 0, a.length));
+    }
+}
+/*
+ * Array kernels behind Calculator's bulk methods. Each kernel is a plain counted loop over
+ * [from, to) with no calls or exceptions inside, which is the shape C2 auto-vectorizes.
+ * Floating-point sums keep four independent accumulators because the JIT won't reorder
+ * FP additions on its own. The fork-join tasks split a range and run the same kernels.
+ */
+class BulkOps {
+    static final int ADD = 0, SUB = 1, MUL = 2;
+    // Below this many elements the parallel variants run on the calling thread
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    static void check(int n, int... lengths) {
+        for (int len : lengths) {
+            if (len != n) throw new IllegalArgumentException("Array lengths differ: " + n + " vs " + len);
+        }
+    }
+
+    static void apply(int op, double[] a, double[] b, double[] out, int from, int to) {
+        switch (op) {
+            case ADD: for (int i = from; i < to; i++) out[i] = a[i] + b[i]; break;
+            case SUB: for (int i = from; i < to; i++) out[i] = a[i] - b[i]; break;
+            default: for (int i = from; i < to; i++) out[i] = a[i] * b[i];
+        }
+    }
+
+    static void apply(int op, int[] a, int[] b, int[] out, int from, int to) {
+        switch (op) {
+            case ADD: for (int i = from; i < to; i++) out[i] = a[i] + b[i]; break;
+            case SUB: for (int i = from; i < to; i++) out[i] = a[i] - b[i]; break;
+            default: for (int i = from; i < to; i++) out[i] = a[i] * b[i];
+        }
+    }
+
+    static void apply(int op, long[] a, long[] b, long[] out, int from, int to) {
+        switch (op) {
+            case ADD: for (int i = from; i < to; i++) out[i] = a[i] + b[i]; break;
+            case SUB: for (int i = from; i < to; i++) out[i] = a[i] - b[i]; break;
+            default: for (int i = from; i < to; i++) out[i] = a[i] * b[i];
+        }
+    }
+
+    static double sum(double[] a, int from, int to) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += a[i];
+            s1 += a[i + 1];
+            s2 += a[i + 2];
+            s3 += a[i + 3];
+        }
+        for (; i < to; i++) s0 += a[i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static long sum(int[] a, int from, int to) {
+        long s = 0;
+        for (int i = from; i < to; i++) s += a[i];
+        return s;
+    }
+
+    static long sum(long[] a, int from, int to) {
+        long s = 0;
+        for (int i = from; i < to; i++) s += a[i];
+        return s;
+    }
+
+    static double product(double[] a, int from, int to) {
+        double p0 = 1, p1 = 1, p2 = 1, p3 = 1;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            p0 *= a[i];
+            p1 *= a[i + 1];
+            p2 *= a[i + 2];
+            p3 *= a[i + 3];
+        }
+        for (; i < to; i++) p0 *= a[i];
+        return (p0 * p1) * (p2 * p3);
+    }
+
+    static long product(int[] a, int from, int to) {
+        long p = 1;
+        for (int i = from; i < to; i++) p *= a[i];
+        return p;
+    }
+
+    static long product(long[] a, int from, int to) {
+        long p = 1;
+        for (int i = from; i < to; i++) p *= a[i];
+        return p;
+    }
+
+    static double dot(double[] a, double[] b, int from, int to) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < to; i++) s0 += a[i] * b[i];
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static long dot(int[] a, int[] b, int from, int to) {
+        long s = 0;
+        for (int i = from; i < to; i++) s += (long) a[i] * b[i];
+        return s;
+    }
+
+    static long dot(long[] a, long[] b, int from, int to) {
+        long s = 0;
+        for (int i = from; i < to; i++) s += a[i] * b[i];
+        return s;
+    }
+
+    // Zero divisors give 0 and set their mask entry instead of throwing; returns how many there were
+    static int divide(double[] a, double[] b, double[] out, boolean[] zero, int from, int to) {
+        int zeros = 0;
+        for (int i = from; i < to; i++) {
+            boolean z = b[i] == 0;
+            zero[i] = z;
+            out[i] = z ? 0 : a[i] / b[i];
+            zeros += z ? 1 : 0;
+        }
+        return zeros;
+    }
+
+    static int divide(int[] a, int[] b, int[] out, boolean[] zero, int from, int to) {
+        int zeros = 0;
+        for (int i = from; i < to; i++) {
+            boolean z = b[i] == 0;
+            zero[i] = z;
+            out[i] = z ? 0 : a[i] / (z ? 1 : b[i]);
+            zeros += z ? 1 : 0;
+        }
+        return zeros;
+    }
+
+    static int divide(long[] a, long[] b, long[] out, boolean[] zero, int from, int to) {
+        int zeros = 0;
+        for (int i = from; i < to; i++) {
+            boolean z = b[i] == 0;
+            zero[i] = z;
+            out[i] = z ? 0 : a[i] / (z ? 1 : b[i]);
+            zeros += z ? 1 : 0;
+        }
+        return zeros;
+    }
+
+    // Element-wise op over one of the three array types; exactly one of d, i, l is set
+    @SuppressWarnings("serial")
+    static final class ElementTask extends RecursiveAction {
+        final int op, from, to;
+        final double[][] d;
+        final int[][] i;
+        final long[][] l;
+
+        ElementTask(int op, double[][] d, int[][] i, long[][] l, int from, int to) {
+            this.op = op;
+            this.d = d;
+            this.i = i;
+            this.l = l;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                if (d != null) apply(op, d[0], d[1], d[2], from, to);
+                else if (i != null) apply(op, i[0], i[1], i[2], from, to);
+                else apply(op, l[0], l[1], l[2], from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ElementTask(op, d, i, l, from, mid), new ElementTask(op, d, i, l, mid, to));
+        }
+    }
+
+    // Sum (b == null) or dot product of double arrays
+    @SuppressWarnings("serial")
+    static final class DoubleReduceTask extends RecursiveTask<Double> {
+        final double[] a, b;
+        final int from, to;
+
+        DoubleReduceTask(double[] a, double[] b, int from, int to) {
+            this.a = a;
+            this.b = b;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= PARALLEL_THRESHOLD) return b == null ? sum(a, from, to) : dot(a, b, from, to);
+            int mid = (from + to) >>> 1;
+            DoubleReduceTask left = new DoubleReduceTask(a, b, from, mid);
+            left.fork();
+            double right = new DoubleReduceTask(a, b, mid, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    // Sum (b == null) or dot product of int arrays, accumulated in a long
+    @SuppressWarnings("serial")
+    static final class IntReduceTask extends RecursiveTask<Long> {
+        final int[] a, b;
+        final int from, to;
+
+        IntReduceTask(int[] a, int[] b, int from, int to) {
+            this.a = a;
+            this.b = b;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= PARALLEL_THRESHOLD) return b == null ? sum(a, from, to) : dot(a, b, from, to);
+            int mid = (from + to) >>> 1;
+            IntReduceTask left = new IntReduceTask(a, b, from, mid);
+            left.fork();
+            long right = new IntReduceTask(a, b, mid, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    // Sum (b == null) or dot product of long arrays
+    @SuppressWarnings("serial")
+    static final class LongReduceTask extends RecursiveTask<Long> {
+        final long[] a, b;
+        final int from, to;
+
+        LongReduceTask(long[] a, long[] b, int from, int to) {
+            this.a = a;
+            this.b = b;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= PARALLEL_THRESHOLD) return b == null ? sum(a, from, to) : dot(a, b, from, to);
+            int mid = (from + to) >>> 1;
+            LongReduceTask left = new LongReduceTask(a, b, from, mid);
+            left.fork();
+            long right = new LongReduceTask(a, b, mid, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    // Scalar loop vs bulk kernel vs fork-join, in ns per element
+    public static void benchmark(int n) {
+        Calculator calc = new Calculator();
+        Random rnd = new Random(1);
+        double[] a = new double[n], b = new double[n], out = new double[n];
+        long[] la = new long[n], lb = new long[n], lout = new long[n];
+        int[] ia = new int[n], ib = new int[n], iout = new int[n];
+        for (int k = 0; k < n; k++) {
+            a[k] = rnd.nextDouble();
+            b[k] = rnd.nextInt(8);
+            la[k] = rnd.nextInt(1000);
+            lb[k] = rnd.nextInt(8);
+            ia[k] = (int) la[k];
+            ib[k] = (int) lb[k];
+        }
+        boolean[] zero = new boolean[n];
+        String[] names = {"scalar add", "add", "parallelAdd", "sum", "parallelSum", "dot", "parallelDot",
+                "long add", "long dot", "divide masked", "long divide masked",
+                "int add", "int parallelAdd", "int dot", "int parallelDot"};
+        double sink = 0;
+        for (int t = 0; t < names.length; t++) {
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < 10; round++) {
+                long start = System.nanoTime();
+                switch (t) {
+                    case 0: for (int k = 0; k < n; k++) out[k] = calc.add(a[k], b[k], 0); break;
+                    case 1: calc.add(a, b, out); break;
+                    case 2: calc.parallelAdd(a, b, out); break;
+                    case 3: sink += calc.sum(a); break;
+                    case 4: sink += calc.parallelSum(a); break;
+                    case 5: sink += calc.dot(a, b); break;
+                    case 6: sink += calc.parallelDot(a, b); break;
+                    case 7: calc.add(la, lb, lout); break;
+                    case 8: sink += calc.dot(la, lb); break;
+                    case 9: sink += calc.divide(a, b, out, zero); break;
+                    case 10: sink += calc.divide(la, lb, lout, zero); break;
+                    case 11: calc.add(ia, ib, iout); break;
+                    case 12: calc.parallelAdd(ia, ib, iout); break;
+                    case 13: sink += calc.dot(ia, ib); break;
+                    default: sink += calc.parallelDot(ia, ib);
+                }
+                best = Math.min(best, (System.nanoTime() - start) / (double) n);
+            }
+            System.out.printf("n=%d %-20s ns/element=%.3f%n", n, names[t], best);
+        }
+        System.out.println("(" + (sink > 0 ? 1 : 0) + ")");
+    }
+}
+
+/*
+ * Formulas such as "fee * (1 + rate / 100) ^ years" are parsed once into a tree, constant
+ * subtrees are folded, and the rest is flattened into postfix bytecode. evaluate() runs that
+ * code over a preallocated operand stack, so repeated calls allocate nothing. An Expression
+ * reuses its stack and must not be shared between threads; use copy() for each thread.
+ */
+class Expression {
+    static final int CONST = 0, VAR = 1, ADD = 2, SUB = 3, MUL = 4, DIV = 5, MOD = 6, POW = 7, NEG = 8,
+            LT = 9, LE = 10, GT = 11, GE = 12, EQ = 13, NE = 14, MIN = 15, MAX = 16, ABS = 17, SQRT = 18,
+            FLOOR = 19, CEIL = 20, IF = 21;
+    private static final String[] FUNCTIONS = {"min", "max", "abs", "sqrt", "floor", "ceil", "if"};
+    private static final int[] FUNCTION_OPS = {MIN, MAX, ABS, SQRT, FLOOR, CEIL, IF};
+    private static final int[] FUNCTION_ARITY = {2, 2, 1, 1, 1, 1, 3};
+
+    // Low byte is the opcode; CONST and VAR keep their operand index in the upper bits
+    private final int[] code;
+    private final double[] constants;
+    private final double[] stack;
+    private final List<String> variables;
+    private final Node tree;
+
+    private Expression(int[] code, double[] constants, int depth, List<String> variables, Node tree) {
+        this.code = code;
+        this.constants = constants;
+        this.stack = new double[depth];
+        this.variables = variables;
+        this.tree = tree;
+    }
+
+    public static Expression compile(String source) {
+        Parser p = new Parser(source);
+        Node tree = p.parse().fold();
+        Emitter e = new Emitter();
+        tree.emit(e);
+        return new Expression(Arrays.copyOf(e.code, e.size), Arrays.copyOf(e.constants, e.constantCount),
+                e.maxDepth, Collections.unmodifiableList(p.variables), tree);
+    }
+
+    public Expression copy() {
+        return new Expression(code, constants, stack.length, variables, tree);
+    }
+
+    // Variable names in order of first appearance; evaluate() takes values in this order
+    public List<String> variables() { return variables; }
+
+    public double evaluate(double[] vars) {
+        double[] st = stack;
+        int sp = -1;
+        for (int instruction : code) {
+            switch (instruction & 0xFF) {
+                case CONST: st[++sp] = constants[instruction >>> 8]; break;
+                case VAR: st[++sp] = vars[instruction >>> 8]; break;
+                case ADD: sp--; st[sp] += st[sp + 1]; break;
+                case SUB: sp--; st[sp] -= st[sp + 1]; break;
+                case MUL: sp--; st[sp] *= st[sp + 1]; break;
+                case DIV: sp--; st[sp] /= st[sp + 1]; break;
+                case MOD: sp--; st[sp] %= st[sp + 1]; break;
+                case POW: sp--; st[sp] = Math.pow(st[sp], st[sp + 1]); break;
+                case NEG: st[sp] = -st[sp]; break;
+                case LT: sp--; st[sp] = st[sp] < st[sp + 1] ? 1 : 0; break;
+                case LE: sp--; st[sp] = st[sp] <= st[sp + 1] ? 1 : 0; break;
+                case GT: sp--; st[sp] = st[sp] > st[sp + 1] ? 1 : 0; break;
+                case GE: sp--; st[sp] = st[sp] >= st[sp + 1] ? 1 : 0; break;
+                case EQ: sp--; st[sp] = st[sp] == st[sp + 1] ? 1 : 0; break;
+                case NE: sp--; st[sp] = st[sp] != st[sp + 1] ? 1 : 0; break;
+                case MIN: sp--; st[sp] = Math.min(st[sp], st[sp + 1]); break;
+                case MAX: sp--; st[sp] = Math.max(st[sp], st[sp + 1]); break;
+                case ABS: st[sp] = Math.abs(st[sp]); break;
+                case SQRT: st[sp] = Math.sqrt(st[sp]); break;
+                case FLOOR: st[sp] = Math.floor(st[sp]); break;
+                case CEIL: st[sp] = Math.ceil(st[sp]); break;
+                case IF: sp -= 2; st[sp] = st[sp] != 0 ? st[sp + 1] : st[sp + 2]; break;
+                default: throw new IllegalStateException("Bad opcode " + (instruction & 0xFF));
+            }
+        }
+        return st[0];
+    }
+
+    // Reference evaluator that walks the parsed tree; kept for comparison
+    public double evaluateTree(double[] vars) { return tree.eval(vars); }
+
+    static final class Emitter {
+        int[] code = new int[16];
+        int size = 0;
+        double[] constants = new double[4];
+        int constantCount = 0;
+        int depth = 0, maxDepth = 1;
+
+        void op(int op, int pops) {
+            if (size == code.length) code = Arrays.copyOf(code, size * 2);
+            code[size++] = op;
+            depth -= pops - 1;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        void constant(double v) {
+            if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+            constants[constantCount] = v;
+            op(CONST | constantCount++ << 8, 0);
+        }
+    }
+
+    static final class Node {
+        final int op;
+        final double value;
+        final int var;
+        final Node[] args;
+
+        Node(int op, double value, int var, Node... args) {
+            this.op = op;
+            this.value = value;
+            this.var = var;
+            this.args = args;
+        }
+
+        static Node constant(double v) { return new Node(CONST, v, 0); }
+
+        Node fold() {
+            if (op == CONST || op == VAR) return this;
+            boolean constant = true;
+            for (int i = 0; i < args.length; i++) {
+                args[i] = args[i].fold();
+                constant &= args[i].op == CONST;
+            }
+            return constant ? constant(eval(null)) : this;
+        }
+
+        void emit(Emitter e) {
+            if (op == CONST) {
+                e.constant(value);
+            } else if (op == VAR) {
+                e.op(VAR | var << 8, 0);
+            } else {
+                for (Node a : args) a.emit(e);
+                e.op(op, args.length);
+            }
+        }
+
+        double eval(double[] vars) {
+            switch (op) {
+                case CONST: return value;
+                case VAR: return vars[var];
+                case NEG: return -args[0].eval(vars);
+                case ABS: return Math.abs(args[0].eval(vars));
+                case SQRT: return Math.sqrt(args[0].eval(vars));
+                case FLOOR: return Math.floor(args[0].eval(vars));
+                case CEIL: return Math.ceil(args[0].eval(vars));
+                case IF: return args[0].eval(vars) != 0 ? args[1].eval(vars) : args[2].eval(vars);
+                default: break;
+            }
+            double a = args[0].eval(vars), b = args[1].eval(vars);
+            switch (op) {
+                case ADD: return a + b;
+                case SUB: return a - b;
+                case MUL: return a * b;
+                case DIV: return a / b;
+                case MOD: return a % b;
+                case POW: return Math.pow(a, b);
+                case LT: return a < b ? 1 : 0;
+                case LE: return a <= b ? 1 : 0;
+                case GT: return a > b ? 1 : 0;
+                case GE: return a >= b ? 1 : 0;
+                case EQ: return a == b ? 1 : 0;
+                case NE: return a != b ? 1 : 0;
+                case MIN: return Math.min(a, b);
+                case MAX: return Math.max(a, b);
+                default: throw new IllegalStateException("Bad opcode " + op);
+            }
+        }
+    }
+
+    /*
+     * Recursive descent, lowest precedence first:
+     *   comparison := sum (("<" | "<=" | ">" | ">=" | "==" | "!=") sum)?
+     *   sum        := product (("+" | "-") product)*
+     *   product    := unary (("*" | "/" | "%") unary)*
+     *   unary      := "-" unary | power
+     *   power      := atom ("^" unary)?
+     *   atom       := number | name | name "(" args ")" | "(" comparison ")"
+     */
+    static final class Parser {
+        final String src;
+        int pos = 0;
+        final List<String> variables = new ArrayList<>();
+
+        Parser(String src) { this.src = src; }
+
+        Node parse() {
+            Node n = comparison();
+            skipSpaces();
+            if (pos < src.length()) throw error("Unexpected '" + src.charAt(pos) + "'");
+            return n;
+        }
+
+        IllegalArgumentException error(String msg) {
+            return new IllegalArgumentException(msg + " at position " + (pos + 1));
+        }
+
+        void skipSpaces() {
+            while (pos < src.length() && Character.isWhitespace(src.charAt(pos))) pos++;
+        }
+
+        boolean eat(String token) {
+            skipSpaces();
+            if (!src.startsWith(token, pos)) return false;
+            pos += token.length();
+            return true;
+        }
+
+        Node comparison() {
+            Node left = sum();
+            int op = eat("<=") ? LE : eat(">=") ? GE : eat("==") ? EQ : eat("!=") ? NE
+                    : eat("<") ? LT : eat(">") ? GT : -1;
+            return op < 0 ? left : new Node(op, 0, 0, left, sum());
+        }
+
+        Node sum() {
+            Node n = product();
+            while (true) {
+                if (eat("+")) n = new Node(ADD, 0, 0, n, product());
+                else if (eat("-")) n = new Node(SUB, 0, 0, n, product());
+                else return n;
+            }
+        }
+
+        Node product() {
+            Node n = unary();
+            while (true) {
+                if (eat("*")) n = new Node(MUL, 0, 0, n, unary());
+                else if (eat("/")) n = new Node(DIV, 0, 0, n, unary());
+                else if (eat("%")) n = new Node(MOD, 0, 0, n, unary());
+                else return n;
+            }
+        }
+
+        Node unary() {
+            return eat("-") ? new Node(NEG, 0, 0, unary()) : power();
+        }
+
+        Node power() {
+            Node base = atom();
+            return eat("^") ? new Node(POW, 0, 0, base, unary()) : base;
+        }
+
+        Node atom() {
+            skipSpaces();
+            if (eat("(")) {
+                Node n = comparison();
+                if (!eat(")")) throw error("Expected ')'");
+                return n;
+            }
+            int start = pos;
+            if (pos < src.length() && (Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '.')) {
+                while (pos < src.length() && (Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '.')) pos++;
+                if (pos < src.length() && (src.charAt(pos) == 'e' || src.charAt(pos) == 'E')) {
+                    pos++;
+                    if (pos < src.length() && (src.charAt(pos) == '+' || src.charAt(pos) == '-')) pos++;
+                    while (pos < src.length() && Character.isDigit(src.charAt(pos))) pos++;
+                }
+                try {
+                    return Node.constant(Double.parseDouble(src.substring(start, pos)));
+                } catch (NumberFormatException e) {
+                    pos = start;
+                    throw error("Bad number");
+                }
+            }
+            while (pos < src.length() && (Character.isLetterOrDigit(src.charAt(pos)) || src.charAt(pos) == '_')) pos++;
+            if (start == pos) throw error(pos < src.length() ? "Unexpected '" + src.charAt(pos) + "'" : "Unexpected end");
+            String name = src.substring(start, pos);
+            if (!eat("(")) {
+                int var = variables.indexOf(name);
+                if (var < 0) {
+                    var = variables.size();
+                    variables.add(name);
+                }
+                return new Node(VAR, 0, var);
+            }
+            int f = Arrays.asList(FUNCTIONS).indexOf(name);
+            if (f < 0) throw error("Unknown function " + name);
+            Node[] args = new Node[FUNCTION_ARITY[f]];
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0 && !eat(",")) throw error(name + " takes " + args.length + " arguments");
+                args[i] = comparison();
+            }
+            if (!eat(")")) throw error("Expected ')'");
+            return new Node(FUNCTION_OPS[f], 0, 0, args);
+        }
+    }
+
+    // Compiled bytecode vs tree walking: ns per evaluation and bytes allocated per evaluation
+    public static void benchmark(long evaluations) {
+        String[] formulas = {
+                "fee * (1 + rate / 100) ^ years - discount",
+                "if(total / 3 >= 40, min(100, total / 3 + bonus), 0) * 2 - 0.5 * 4",
+        };
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        for (String src : formulas) {
+            Expression e = compile(src);
+            double[] vars = new double[e.variables().size()];
+            Arrays.fill(vars, 1.5);
+            for (boolean compiled : new boolean[] {false, true}) {
+                double best = Double.MAX_VALUE, sink = 0;
+                long allocated = 0;
+                for (int round = 0; round < 5; round++) {
+                    long bytes = mx.getThreadAllocatedBytes(tid);
+                    long start = System.nanoTime();
+                    for (long i = 0; i < evaluations; i++) {
+                        vars[0] = i & 1023;
+                        sink += compiled ? e.evaluate(vars) : e.evaluateTree(vars);
+                    }
+                    best = Math.min(best, (System.nanoTime() - start) / (double) evaluations);
+                    allocated = mx.getThreadAllocatedBytes(tid) - bytes;
+                }
+                System.out.printf("%-10s ns/eval=%.2f bytes/eval=%.3f  %s (%.0f)%n", compiled ? "bytecode" : "tree",
+                        best, allocated / (double) evaluations, src, sink % 10);
+            }
+        }
+    }
+}
+
+class UserInterface {
+    public static void main(String[] args) {
+        Scanner scanner = new Scanner(System.in);
+        Calculator calculator = new Calculator();
+        while (true) {
+            System.out.println("Calculator Menu:");
+            System.out.println("1. Addition");
+            System.out.println("2. Subtraction");
+            System.out.println("3. Multiplication");
+            System.out.println("4. Division");
+            System.out.println("5. Evaluate Formula");
+            System.out.println("6. Exit");
+            System.out.print("Enter your choice: ");
+            int choice = scanner.nextInt();
+            switch (choice) {
+                case 1 -> performAddition(scanner, calculator);
+                case 2 -> performSubtraction(scanner, calculator);
+                case 3 -> performMultiplication(scanner, calculator);
+                case 4 -> performDivision(scanner, calculator);
+                case 5 -> performEvaluation(scanner);
+                case 6 -> {
+                    System.out.println("Exiting...");
+                    scanner.close();
+                    return;
+                }
+                default -> System.out.println("Invalid choice. Please try again.");
+            }
+        }
+    }
+    public static void performAddition(Scanner scanner, Calculator calculator) {
+        System.out.print("Enter the first number: ");
+        double num1 = scanner.nextDouble();
+        System.out.print("Enter the second number: ");
+        double num2 = scanner.nextDouble();
+        double result = calculator.add(num1, num2, 0);
+        System.out.println("Addition Result: " + result);
+        System.out.print("Do you want to add three integers? (yes/no): ");
+        String response = scanner.next();
+        if (response.equalsIgnoreCase("yes")) {
+            System.out.print("Enter the third integer: ");
+            int num3 = scanner.nextInt();
+            int additionResult = calculator.add((int) num1, (int) num2, num3);
+            System.out.println("Addition Result: " + additionResult);
+        }
+    }
+    public static void performSubtraction(Scanner scanner, Calculator calculator) {
+        System.out.print("Enter the first integer: ");
+        int num1 = scanner.nextInt();
+        System.out.print("Enter the second integer: ");
+        int num2 = scanner.nextInt();
+        int result = calculator.subtract(num1, num2);
+        System.out.println("Subtraction Result: " + result);
+    }
+    public static void performMultiplication(Scanner scanner, Calculator calculator) {
+        System.out.print("Enter the first double: ");
+        double num1 = scanner.nextDouble();
+        System.out.print("Enter the second double: ");
+        double num2 = scanner.nextDouble();
+        double result = calculator.multiply(num1, num2);
+        System.out.println("Multiplication Result: " + result);
+    }
+    public static void performEvaluation(Scanner scanner) {
+        System.out.print("Enter the formula: ");
+        scanner.nextLine();
+        String source = scanner.nextLine();
+        try {
+            Expression expression = Expression.compile(source);
+            double[] values = new double[expression.variables().size()];
+            for (int i = 0; i < values.length; i++) {
+                System.out.print("Enter " + expression.variables().get(i) + ": ");
+                values[i] = scanner.nextDouble();
+            }
+            System.out.println("Formula Result: " + expression.evaluate(values));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+    public static void performDivision(Scanner scanner, Calculator calculator) {
+        System.out.print("Enter the dividend: ");
+        int dividend = scanner.nextInt();
+        System.out.print("Enter the divisor: ");
+        int divisor = scanner.nextInt();
+        try {
+            int result = calculator.divide(dividend, divisor);
+            System.out.println("Division Result: " + result);
+        } catch (ArithmeticException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
+public class CalculatorApplication {
+    public static void main(String[] args) {
+        if (args.length > 1 && args[0].equals("bench")) {
+            switch (args[1]) {
+                case "expr" -> Expression.benchmark(20_000_000);
+                case "bulk" -> {
+                    BulkOps.benchmark(1_000);
+                    BulkOps.benchmark(1_000_000);
+                    BulkOps.benchmark(10_000_000);
+                }
+                default -> System.out.println("Unknown benchmark: " + args[1]);
+            }
+            return;
+        }
+        UserInterface.main(args);
+    }
+}
\ No newline at end of file
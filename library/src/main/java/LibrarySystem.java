@@ -0,0 +1,1764 @@
+import java.io.*;
+import java.util.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.*;
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+public class LibrarySystem {
+    static class Book {
+        int bookId;
+        String title;
+        String author;
+        String category;
+        // Written only while holding the book's monitor
+        volatile boolean isIssued;
+        // The current loan while issued, otherwise null; guarded like isIssued
+        Loan loan;
+        // Journal sequence of the last record applied to this book; guarded like isIssued
+        long seq;
+        CollationKey sortKey;
+        Book(int id, String t, String a, String c) {
+            bookId = id;
+            title = t;
+            author = a;
+            category = c;
+            isIssued = false;
+        }
+        // Collation keys are costly, so they are built on first use rather than on load
+        CollationKey sortKey() {
+            if (sortKey == null) sortKey = titleKey(title);
+            return sortKey;
+        }
+        void display() {
+            Loan l = loan;
+            System.out.println(bookId + " | " + title + " | " + author +
+                    " | " + category + " | Issued: " + isIssued +
+                    (l != null ? " | Due: " + date(l.dueAt) : ""));
+        }
+        public String toFile() {
+            return bookId + "," + title + "," + author + "," + category + "," + isIssued;
+        }
+        public static Book fromFile(String line) {
+            String[] p = line.split(",");
+            Book b = new Book(Integer.parseInt(p[0]), p[1], p[2], p[3]);
+            b.isIssued = Boolean.parseBoolean(p[4]);
+            return b;
+        }
+    }
+    static class Member {
+        int memberId;
+        String name;
+        String email;
+        IntSet issued = new IntSet();
+        // Fines settled on return, in paise; loans still out accrue on top of this
+        AtomicLong fines = new AtomicLong();
+        // Journal sequence of the last record applied to this member. Member-side changes
+        // and their records are made under the member's monitor, so seq order is apply order.
+        long seq;
+        Member(int id, String n, String e) {
+            memberId = id;
+            name = n;
+            email = e;
+        }
+        void display() {
+            System.out.println(memberId + " | " + name + " | " + email +
+                    " | Books: " + issued + (fines.get() > 0 ? " | Fines: " + money(fines.get()) : ""));
+        }
+        public String toFile() {
+            return memberId + "," + name + "," + email + "," + issued.toString();
+        }
+        public static Member fromFile(String line) {
+            String[] p = line.split(",", 4);
+            Member m = new Member(Integer.parseInt(p[0]), p[1], p[2]);
+            String list = p.length > 3 ? p[3].replace("[", "").replace("]", "").trim() : "";
+            if (!list.isEmpty()) {
+                for (String id : list.split(",")) m.issued.add(Integer.parseInt(id.trim()));
+            }
+            return m;
+        }
+    }
+    static String date(long millis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).toString();
+    }
+    static String money(long paise) {
+        return String.format("Rs %d.%02d", paise / 100, paise % 100);
+    }
+    /*
+     * An outstanding loan. `stage` counts the wheel events already handled: 0 waits for
+     * the due-soon reminder, 1 for the due date, and n >= 2 for the (n-1)th weekly
+     * overdue reminder, so eventAt() alone says when the loan next needs attention.
+     */
+    static class Loan {
+        static final long DAY_MS = 24L * 60 * 60 * 1000;
+        static final long PERIOD_MS = 14 * DAY_MS;
+        static final long REMIND_BEFORE_MS = DAY_MS;
+        static final long REMIND_EVERY_MS = 7 * DAY_MS;
+        static final long FINE_PER_DAY = 500; // paise
+
+        final int bookId;
+        final int memberId;
+        final long dueAt;
+        int stage;
+        // Wheel bookkeeping, guarded by the wheel; level < 0 while unscheduled
+        long tick;
+        int level = -1, slot;
+        Loan prev, next;
+
+        Loan(int bookId, int memberId, long dueAt) {
+            this.bookId = bookId;
+            this.memberId = memberId;
+            this.dueAt = dueAt;
+        }
+        long eventAt() {
+            if (stage == 0) return dueAt - REMIND_BEFORE_MS;
+            return dueAt + (stage - 1) * REMIND_EVERY_MS;
+        }
+        void advanceStage(long now) {
+            stage = nextStage(now);
+        }
+        // Skips reminders that fell due while the library was shut, so a restart sends one, not a backlog
+        int nextStage(long now) {
+            int next = stage + 1;
+            long at = next == 1 ? dueAt : dueAt + (next - 1) * REMIND_EVERY_MS;
+            if (at <= now) next = Math.max(next, (int) ((now - dueAt) / REMIND_EVERY_MS) + 2);
+            return next;
+        }
+        boolean overdue(long now) {
+            return now > dueAt;
+        }
+        // Each started day past the due date costs FINE_PER_DAY
+        long fine(long now) {
+            if (now <= dueAt) return 0;
+            return (now - dueAt + DAY_MS - 1) / DAY_MS * FINE_PER_DAY;
+        }
+    }
+    /*
+     * Hierarchical timing wheel of loans keyed by their next event. Level 0 has one slot
+     * per minute tick and each slot of a higher level spans a whole turn of the level
+     * below, so four levels of 64 slots reach about 32 years. Scheduling and cancelling
+     * unlink a node in O(1); advancing visits one level-0 slot per tick and re-files a
+     * higher slot only when the level below wraps, so a tick costs O(loans expiring)
+     * instead of a scan over every open loan.
+     */
+    static class LoanWheel {
+        static final long TICK_MS = 60_000;
+        static final int BITS = 6, SLOTS = 1 << BITS, MASK = SLOTS - 1, LEVELS = 4;
+
+        final Loan[][] heads = new Loan[LEVELS][SLOTS];
+        long now;
+        int size;
+
+        LoanWheel(long nowMillis) {
+            now = nowMillis / TICK_MS;
+        }
+        // Re-scheduling a loan that is still on the wheel moves it without counting it twice
+        synchronized void schedule(Loan l) {
+            if (l.level >= 0) unlink(l);
+            else size++;
+            // Already due: the next tick picks it up
+            l.tick = Math.max((l.eventAt() + TICK_MS - 1) / TICK_MS, now + 1);
+            link(l);
+        }
+        synchronized void cancel(Loan l) {
+            if (l.level < 0) return;
+            unlink(l);
+            size--;
+        }
+        synchronized int size() {
+            return size;
+        }
+        // Moves the clock to nowMillis and returns the loans whose event fell due, unscheduled
+        synchronized List<Loan> advance(long nowMillis) {
+            List<Loan> due = new ArrayList<>();
+            long target = nowMillis / TICK_MS;
+            while (now < target) {
+                now++;
+                // Re-file the next slot of every level whose lower neighbour just wrapped
+                for (int level = 1; level < LEVELS && (now & ((1L << (BITS * level)) - 1)) == 0; level++) {
+                    Loan l = heads[level][(int) (now >>> (BITS * level)) & MASK];
+                    heads[level][(int) (now >>> (BITS * level)) & MASK] = null;
+                    while (l != null) {
+                        Loan next = l.next;
+                        l.prev = l.next = null;
+                        link(l);
+                        l = next;
+                    }
+                }
+                int slot = (int) now & MASK;
+                for (Loan l = heads[0][slot]; l != null; ) {
+                    Loan next = l.next;
+                    l.prev = l.next = null;
+                    l.level = -1;
+                    due.add(l);
+                    size--;
+                    l = next;
+                }
+                heads[0][slot] = null;
+                if (size == 0) now = Math.max(now, target);
+            }
+            return due;
+        }
+        // Lowest level whose span still covers the distance; the top level absorbs anything further out
+        void link(Loan l) {
+            long delta = l.tick - now;
+            int level = 0;
+            while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) level++;
+            long tick = Math.min(l.tick, now + (1L << (BITS * LEVELS)) - 1);
+            int slot = (int) (tick >>> (BITS * level)) & MASK;
+            l.level = level;
+            l.slot = slot;
+            l.next = heads[level][slot];
+            l.prev = null;
+            if (l.next != null) l.next.prev = l;
+            heads[level][slot] = l;
+        }
+        void unlink(Loan l) {
+            if (l.prev != null) l.prev.next = l.next;
+            else heads[l.level][l.slot] = l.next;
+            if (l.next != null) l.next.prev = l.prev;
+            l.prev = l.next = null;
+            l.level = -1;
+        }
+    }
+    // Case- and width-insensitive ordering for titles, so "apple" sorts next to "Apple"
+    static final Collator TITLE_ORDER = Collator.getInstance(Locale.ROOT);
+    static {
+        TITLE_ORDER.setStrength(Collator.SECONDARY);
+    }
+    static synchronized CollationKey titleKey(String title) {
+        return TITLE_ORDER.getCollationKey(title);
+    }
+    static final Comparator<Book> BY_TITLE = (a, b) -> {
+        int c = a.sortKey().compareTo(b.sortKey());
+        return c != 0 ? c : Integer.compare(a.bookId, b.bookId);
+    };
+    /*
+     * Binary snapshot layout (big-endian):
+     *   int magic, int version, int bookCount, int memberCount
+     *   book:   int id, long seq, byte issued, [long dueAt, int borrower, int stage if issued],
+     *           str title, str author, str category
+     *   member: int id, long seq, str name, str email, long fines, int issuedCount, int[issuedCount]
+     *   long CRC32 of everything above
+     * where str is an int byte length followed by UTF-8 bytes. Each entity is captured
+     * under its own monitor together with the journal sequence it reflects, so replaying
+     * a log that overlaps the snapshot skips what the snapshot already holds. Version 1
+     * files have no loan fields or fines (their loans get a due date when loaded), and
+     * versions before 3 have no sequences.
+     */
+    static class Snapshot {
+        static final int MAGIC = 0x4C494253; // "LIBS"
+        static final int VERSION = 3;
+
+        static void write(File f, Collection<Book> bookList, Collection<Member> memberList) throws IOException {
+            CRC32 crc = new CRC32();
+            try (FileOutputStream fos = new FileOutputStream(f)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(fos, crc), 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(bookList.size());
+                out.writeInt(memberList.size());
+                for (Book b : bookList) {
+                    out.writeInt(b.bookId);
+                    // The loan is read under the monitor so due date and stage are consistent
+                    Loan l;
+                    synchronized (b) {
+                        out.writeLong(b.seq);
+                        l = b.isIssued ? b.loan : null;
+                        out.writeByte(b.isIssued ? 1 : 0);
+                        if (l != null) {
+                            out.writeLong(l.dueAt);
+                            out.writeInt(l.memberId);
+                            out.writeInt(l.stage);
+                        } else if (b.isIssued) {
+                            out.writeLong(0);
+                            out.writeInt(0);
+                            out.writeInt(0);
+                        }
+                    }
+                    writeString(out, b.title);
+                    writeString(out, b.author);
+                    writeString(out, b.category);
+                }
+                for (Member m : memberList) {
+                    out.writeInt(m.memberId);
+                    synchronized (m) {
+                        out.writeLong(m.seq);
+                        writeString(out, m.name);
+                        writeString(out, m.email);
+                        out.writeLong(m.fines.get());
+                        int[] ids = m.issued.toArray();
+                        out.writeInt(ids.length);
+                        for (int id : ids) out.writeInt(id);
+                    }
+                }
+                out.flush();
+                // The checksum itself sits outside the checked stream
+                new DataOutputStream(fos).writeLong(crc.getValue());
+                fos.getFD().sync();
+            }
+        }
+        static void writeString(DataOutputStream out, String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        // Returns the highest journal sequence any entity reflects
+        static long read(File f, IntMap<Book> bookMap, IntMap<Member> memberMap) throws IOException {
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                if (ch.size() > Integer.MAX_VALUE) throw new IOException("snapshot larger than 2 GB");
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                if (buf.limit() < 24) throw new IOException("snapshot truncated");
+                CRC32 crc = new CRC32();
+                crc.update(buf.duplicate().limit(buf.limit() - 8));
+                if (crc.getValue() != buf.getLong(buf.limit() - 8)) throw new IOException("snapshot checksum mismatch");
+                if (buf.getInt() != MAGIC) throw new IOException("not a library snapshot");
+                int version = buf.getInt();
+                if (version < 1 || version > VERSION) throw new IOException("unsupported snapshot version " + version);
+                int bookCount = buf.getInt();
+                int memberCount = buf.getInt();
+                byte[] scratch = new byte[256];
+                long maxSeq = 0;
+                for (int i = 0; i < bookCount; i++) {
+                    int id = buf.getInt();
+                    long seq = version >= 3 ? buf.getLong() : 0;
+                    boolean issued = buf.get() != 0;
+                    Loan loan = null;
+                    if (issued && version >= 2) {
+                        long dueAt = buf.getLong();
+                        int borrower = buf.getInt();
+                        int stage = buf.getInt();
+                        if (borrower != 0) {
+                            loan = new Loan(id, borrower, dueAt);
+                            loan.stage = stage;
+                        }
+                    }
+                    String title = readString(buf, scratch);
+                    String author = readString(buf, scratch);
+                    String category = readString(buf, scratch);
+                    Book b = new Book(id, title, author, category);
+                    b.isIssued = issued;
+                    b.loan = loan;
+                    b.seq = seq;
+                    maxSeq = Math.max(maxSeq, seq);
+                    bookMap.put(id, b);
+                }
+                for (int i = 0; i < memberCount; i++) {
+                    int id = buf.getInt();
+                    long seq = version >= 3 ? buf.getLong() : 0;
+                    Member m = new Member(id, readString(buf, scratch), readString(buf, scratch));
+                    if (version >= 2) m.fines.set(buf.getLong());
+                    int n = buf.getInt();
+                    for (int j = 0; j < n; j++) m.issued.add(buf.getInt());
+                    m.seq = seq;
+                    maxSeq = Math.max(maxSeq, seq);
+                    memberMap.put(id, m);
+                }
+                return maxSeq;
+            }
+        }
+        static String readString(ByteBuffer buf, byte[] scratch) {
+            int len = buf.getInt();
+            byte[] bytes = len <= scratch.length ? scratch : new byte[len];
+            buf.get(bytes, 0, len);
+            return new String(bytes, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+    /*
+     * Open-addressing map from positive int keys to values, split into independently
+     * locked segments. Keys live in a flat int[] so lookups never box and there is
+     * no per-entry node; 0 marks an empty slot. Entries are never removed.
+     */
+    static class IntMap<V> {
+        static final int SEGMENT_BITS = 4;
+
+        final Segment<V>[] segments;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        IntMap() {
+            segments = new Segment[1 << SEGMENT_BITS];
+            for (int i = 0; i < segments.length; i++) segments[i] = new Segment<>();
+        }
+        static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+        Segment<V> segment(int h) {
+            return segments[h >>> (32 - SEGMENT_BITS)];
+        }
+        V get(int key) {
+            int h = mix(key);
+            return segment(h).get(key, h);
+        }
+        V put(int key, V value) {
+            int h = mix(key);
+            return segment(h).put(key, h, value, false);
+        }
+        V putIfAbsent(int key, V value) {
+            int h = mix(key);
+            return segment(h).put(key, h, value, true);
+        }
+        int size() {
+            int n = 0;
+            for (Segment<V> s : segments) n += s.size();
+            return n;
+        }
+        boolean isEmpty() {
+            return size() == 0;
+        }
+        void clear() {
+            for (Segment<V> s : segments) s.clear();
+        }
+        // Copied segment by segment without locking; writes racing the copy may be missed
+        List<V> values() {
+            List<V> list = new ArrayList<>(size());
+            for (Segment<V> s : segments) s.copyValues(list);
+            return list;
+        }
+
+        /*
+         * Readers never lock: they probe whichever table is current. Writers lock the segment,
+         * set the value before the key so a visible key always has its value, and publish a
+         * resized or cleared table only once it is fully built.
+         */
+        static final class Segment<V> {
+            static final class Table<V> {
+                final AtomicIntegerArray keys;
+                final AtomicReferenceArray<V> vals;
+                Table(int capacity) {
+                    keys = new AtomicIntegerArray(capacity);
+                    vals = new AtomicReferenceArray<>(capacity);
+                }
+            }
+            volatile Table<V> table = new Table<>(16);
+            volatile int size;
+
+            V get(int key, int h) {
+                Table<V> t = table;
+                int mask = t.keys.length() - 1;
+                for (int i = h & mask; ; i = (i + 1) & mask) {
+                    int k = t.keys.get(i);
+                    if (k == key) return t.vals.get(i);
+                    if (k == 0) return null;
+                }
+            }
+            synchronized V put(int key, int h, V value, boolean onlyIfAbsent) {
+                if (key <= 0) throw new IllegalArgumentException("key must be positive: " + key);
+                Table<V> t = table;
+                int mask = t.keys.length() - 1;
+                int i = h & mask;
+                for (int k; (k = t.keys.get(i)) != 0; i = (i + 1) & mask) {
+                    if (k == key) {
+                        V old = t.vals.get(i);
+                        if (!onlyIfAbsent) t.vals.set(i, value);
+                        return old;
+                    }
+                }
+                t.vals.set(i, value);
+                t.keys.set(i, key);
+                size++;
+                if (size * 4 > t.keys.length() * 3) resize(t);
+                return null;
+            }
+            void resize(Table<V> old) {
+                Table<V> t = new Table<>(old.keys.length() * 2);
+                int mask = t.keys.length() - 1;
+                for (int j = 0; j < old.keys.length(); j++) {
+                    int k = old.keys.get(j);
+                    if (k == 0) continue;
+                    int i = mix(k) & mask;
+                    while (t.keys.get(i) != 0) i = (i + 1) & mask;
+                    t.vals.set(i, old.vals.get(j));
+                    t.keys.set(i, k);
+                }
+                table = t;
+            }
+            int size() {
+                return size;
+            }
+            synchronized void clear() {
+                table = new Table<>(16);
+                size = 0;
+            }
+            void copyValues(List<V> out) {
+                Table<V> t = table;
+                for (int i = 0; i < t.keys.length(); i++) {
+                    if (t.keys.get(i) != 0) out.add(t.vals.get(i));
+                }
+            }
+        }
+    }
+    // Small open-addressing set of positive ints, used for a member's issued books
+    static class IntSet {
+        int[] slots = new int[4];
+        int size;
+
+        synchronized boolean add(int v) {
+            int mask = slots.length - 1;
+            int i = IntMap.mix(v) & mask;
+            for (; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == v) return false;
+            }
+            slots[i] = v;
+            if (++size * 4 > slots.length * 3) rehash(slots.length * 2);
+            return true;
+        }
+        synchronized boolean contains(int v) {
+            int mask = slots.length - 1;
+            for (int i = IntMap.mix(v) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == v) return true;
+            }
+            return false;
+        }
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        synchronized boolean remove(int v) {
+            int mask = slots.length - 1;
+            int i = IntMap.mix(v) & mask;
+            while (slots[i] != v) {
+                if (slots[i] == 0) return false;
+                i = (i + 1) & mask;
+            }
+            int gap = i;
+            for (int j = (gap + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+                int home = IntMap.mix(slots[j]) & mask;
+                // Move slots[j] into the gap unless its home lies cyclically in (gap, j]
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    slots[gap] = slots[j];
+                    gap = j;
+                }
+            }
+            slots[gap] = 0;
+            size--;
+            return true;
+        }
+        void rehash(int capacity) {
+            int[] old = slots;
+            slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int v : old) {
+                if (v == 0) continue;
+                int i = IntMap.mix(v) & mask;
+                while (slots[i] != 0) i = (i + 1) & mask;
+                slots[i] = v;
+            }
+        }
+        synchronized int size() {
+            return size;
+        }
+        synchronized int[] toArray() {
+            int[] out = new int[size];
+            int n = 0;
+            for (int v : slots) {
+                if (v != 0) out[n++] = v;
+            }
+            return out;
+        }
+        @Override
+        public String toString() {
+            int[] ids = toArray();
+            Arrays.sort(ids);
+            return Arrays.toString(ids);
+        }
+    }
+    // Append-only operation log; one record per mutation, fsync'd in batches. Each line is
+    // "seq\tTYPE\tfields..."; logs written before sequences existed start with the type.
+    static class Journal {
+        static final int SYNC_EVERY = 64;
+        static final long SYNC_INTERVAL_MS = 200;
+        static final Metrics.Timer APPEND_TIME = Metrics.timer("library.journal.append");
+        static final Metrics.Timer SYNC_TIME = Metrics.timer("library.journal.sync");
+        static final Metrics.Counter FAILURES = Metrics.counter("library.journal.failed");
+
+        File file;
+        FileOutputStream out;
+        Writer writer;
+        int records = 0;
+        int pending = 0;
+        long lastSync = System.currentTimeMillis();
+        long nextSeq = 1;
+        Timer flusher;
+
+        static final class Record {
+            final long seq;
+            final String[] fields;
+            final File file;
+            final long offset;
+            // False when the line has no newline, i.e. the process died mid-append
+            final boolean complete;
+            Record(long seq, String[] fields, File file, long offset, boolean complete) {
+                this.seq = seq;
+                this.fields = fields;
+                this.file = file;
+                this.offset = offset;
+                this.complete = complete;
+            }
+        }
+
+        Journal(File f) {
+            file = f;
+        }
+        File retired() {
+            return new File(file.getPath() + ".old");
+        }
+        // A retired log left behind by an interrupted compaction is replayed first
+        List<Record> read() throws IOException {
+            List<Record> list = new ArrayList<>();
+            read(retired(), list);
+            int before = list.size();
+            read(file, list);
+            records = list.size() - before;
+            return list;
+        }
+        // Sequence 0 marks a record from a log that predates sequences. A line that cannot be
+        // parsed comes back with no fields so replay rejects it with its offset.
+        static void read(File f, List<Record> list) throws IOException {
+            if (!f.exists()) return;
+            byte[] data = Files.readAllBytes(f.toPath());
+            int start = 0;
+            while (start < data.length) {
+                int end = start;
+                while (end < data.length && data[end] != '\n') end++;
+                if (end > start) {
+                    String[] p = new String(data, start, end - start, StandardCharsets.UTF_8).split("\t", -1);
+                    for (int i = 0; i < p.length; i++) p[i] = unescape(p[i]);
+                    long seq = 0;
+                    String[] fields = p;
+                    if (!p[0].isEmpty() && Character.isDigit(p[0].charAt(0))) {
+                        try {
+                            seq = Long.parseLong(p[0]);
+                            fields = Arrays.copyOfRange(p, 1, p.length);
+                        } catch (NumberFormatException e) {
+                            fields = new String[0];
+                        }
+                    }
+                    list.add(new Record(seq, fields, f, start, end < data.length));
+                }
+                start = end + 1;
+            }
+        }
+        // Cuts a torn tail off the live log before open() appends behind it
+        void truncate(long length) throws IOException {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(length);
+                ch.force(true);
+            }
+        }
+        void open() throws IOException {
+            openFile();
+            flusher = new Timer("journal-sync", true);
+            flusher.schedule(new TimerTask() {
+                public void run() {
+                    synchronized (Journal.this) {
+                        try {
+                            if (pending > 0) sync();
+                        } catch (UncheckedIOException e) {
+                            System.out.println("Journal sync failed: " + e.getMessage());
+                        }
+                    }
+                }
+            }, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS);
+        }
+        void openFile() throws IOException {
+            out = new FileOutputStream(file, true);
+            writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        }
+        // Records stay in the writer's buffer until the next sync(). A failure is thrown so
+        // the caller can refuse the mutation instead of reporting one that would be lost.
+        // Returns the record's sequence number
+        synchronized long append(String... fields) {
+            long start = System.nanoTime();
+            try {
+                long seq = nextSeq;
+                StringBuilder sb = new StringBuilder();
+                sb.append(seq);
+                for (String field : fields) sb.append('\t').append(escape(field));
+                sb.append('\n');
+                writer.write(sb.toString());
+                records++;
+                pending++;
+                nextSeq++;
+                if (pending >= SYNC_EVERY || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MS) {
+                    sync();
+                }
+                return seq;
+            } catch (IOException e) {
+                FAILURES.inc();
+                throw new UncheckedIOException("Journal write failed", e);
+            } finally {
+                APPEND_TIME.stop(start);
+            }
+        }
+        synchronized void sync() {
+            try {
+                long start = System.nanoTime();
+                writer.flush();
+                out.getFD().sync();
+                SYNC_TIME.stop(start);
+                pending = 0;
+                lastSync = System.currentTimeMillis();
+            } catch (IOException e) {
+                FAILURES.inc();
+                throw new UncheckedIOException("Journal sync failed", e);
+            }
+        }
+        // Move the live log aside and start an empty one. The caller must keep records from
+        // being appended but not yet applied while this runs, or a snapshot taken afterwards
+        // can miss one that only the retired log held.
+        synchronized boolean rotate() {
+            try {
+                sync();
+                writer.close();
+                Files.move(file.toPath(), retired().toPath(), StandardCopyOption.REPLACE_EXISTING);
+                openFile();
+                records = 0;
+                return true;
+            } catch (IOException | UncheckedIOException e) {
+                System.out.println("Journal rotate failed: " + e.getMessage());
+                return false;
+            }
+        }
+        synchronized void close() {
+            if (out == null) return;
+            flusher.cancel();
+            try {
+                sync();
+            } catch (UncheckedIOException e) {
+                System.out.println("Journal sync failed: " + e.getMessage());
+            }
+            try {
+                writer.close();
+            } catch (IOException ignored) {}
+            out = null;
+        }
+        static String escape(String s) {
+            return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+        }
+        static String unescape(String s) {
+            if (s.indexOf('\\') < 0) return s;
+            StringBuilder sb = new StringBuilder(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\\' && i + 1 < s.length()) {
+                    char n = s.charAt(++i);
+                    sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n);
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+    }
+    // Inverted index from normalized token to the books (and fields) containing it
+    static class SearchIndex {
+        static final int TITLE = 1, AUTHOR = 2, CATEGORY = 4;
+
+        ConcurrentSkipListMap<String, Map<Integer, Integer>> postings = new ConcurrentSkipListMap<>();
+
+        void add(Book b) {
+            index(b.bookId, b.title, TITLE);
+            index(b.bookId, b.author, AUTHOR);
+            index(b.bookId, b.category, CATEGORY);
+        }
+        void index(int id, String text, int field) {
+            for (String t : tokenize(text)) {
+                postings.computeIfAbsent(t, k -> new ConcurrentHashMap<>()).merge(id, field, (a, c) -> a | c);
+            }
+        }
+        static List<String> tokenize(String s) {
+            List<String> tokens = new ArrayList<>();
+            int start = -1;
+            for (int i = 0; i <= s.length(); i++) {
+                boolean word = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+                if (word && start < 0) start = i;
+                if (!word && start >= 0) {
+                    tokens.add(s.substring(start, i).toLowerCase(Locale.ROOT));
+                    start = -1;
+                }
+            }
+            return tokens;
+        }
+        // Terms are ANDed unless the query contains OR; a trailing * makes a term a prefix
+        List<Integer> query(String q) {
+            boolean or = false;
+            List<String> terms = new ArrayList<>();
+            List<Boolean> prefix = new ArrayList<>();
+            for (String w : q.trim().split("\\s+")) {
+                if (w.equals("OR")) {
+                    or = true;
+                    continue;
+                }
+                List<String> tokens = tokenize(w);
+                for (int i = 0; i < tokens.size(); i++) {
+                    terms.add(tokens.get(i));
+                    prefix.add(i == tokens.size() - 1 && w.endsWith("*"));
+                }
+            }
+            if (terms.isEmpty()) return new ArrayList<>();
+
+            List<Map<Integer, Integer>> hits = new ArrayList<>();
+            for (int i = 0; i < terms.size(); i++) hits.add(lookup(terms.get(i), prefix.get(i)));
+            // Intersect from the rarest term so AND queries touch as few postings as possible
+            if (!or) hits.sort(Comparator.comparingInt(Map::size));
+
+            Map<Integer, Integer> masks = new HashMap<>();
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int i = 0; i < hits.size(); i++) {
+                Map<Integer, Integer> h = hits.get(i);
+                if (!or && i > 0) {
+                    masks.keySet().retainAll(h.keySet());
+                    for (Map.Entry<Integer, Integer> e : masks.entrySet()) e.setValue(e.getValue() | h.get(e.getKey()));
+                    continue;
+                }
+                for (Map.Entry<Integer, Integer> e : h.entrySet()) {
+                    masks.merge(e.getKey(), e.getValue(), (a, c) -> a | c);
+                    counts.merge(e.getKey(), 1, Integer::sum);
+                }
+            }
+            List<Integer> ids = new ArrayList<>(masks.keySet());
+            ids.sort((a, b) -> {
+                int c = Integer.bitCount(masks.get(b)) - Integer.bitCount(masks.get(a));
+                if (c == 0) c = counts.get(b) - counts.get(a);
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+            return ids;
+        }
+        Map<Integer, Integer> lookup(String term, boolean prefix) {
+            if (!prefix) return postings.getOrDefault(term, Collections.emptyMap());
+            Map<Integer, Integer> merged = new HashMap<>();
+            SortedMap<String, Map<Integer, Integer>> range = postings.subMap(term, term + Character.MAX_VALUE);
+            for (Map<Integer, Integer> p : range.values()) {
+                for (Map.Entry<Integer, Integer> e : p.entrySet()) merged.merge(e.getKey(), e.getValue(), (a, c) -> a | c);
+            }
+            return merged;
+        }
+    }
+    // Streaming bulk loader for CSV/TSV catalogs of title, author, category rows
+    static class CatalogImport {
+        static final int CHUNK = 1 << 16;
+        static final int LEAF = 4096;
+        static final int MAX_ERRORS = 20;
+
+        long rows;
+        long imported;
+        long rejected;
+        double seconds;
+        List<String> errors = new ArrayList<>();
+
+        void reject(long line, String why) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) errors.add("line " + line + ": " + why);
+        }
+        void print() {
+            System.out.printf("Imported %d of %d rows in %.2fs (%.0f rows/sec), %d rejected.%n",
+                    imported, rows, seconds, rows / Math.max(seconds, 1e-9), rejected);
+            for (String e : errors) System.out.println("  " + e);
+            if (rejected > errors.size()) System.out.println("  ...");
+        }
+        // Splits a chunk of raw lines across the fork-join pool; null marks a rejected row
+        @SuppressWarnings("serial")
+        static class ParseTask extends RecursiveAction {
+            final String[] lines;
+            final String[][] out;
+            final int from, to;
+            final char sep;
+
+            ParseTask(String[] lines, String[][] out, int from, int to, char sep) {
+                this.lines = lines;
+                this.out = out;
+                this.from = from;
+                this.to = to;
+                this.sep = sep;
+            }
+            @Override
+            protected void compute() {
+                if (to - from <= LEAF) {
+                    for (int i = from; i < to; i++) out[i] = parse(lines[i], sep);
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                invokeAll(new ParseTask(lines, out, from, mid, sep), new ParseTask(lines, out, mid, to, sep));
+            }
+        }
+        // Quoted fields may contain the separator; "" inside quotes is a literal quote
+        static String[] parse(String line, char sep) {
+            String[] f = new String[3];
+            int n = 0;
+            StringBuilder sb = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i <= line.length(); i++) {
+                char c = i < line.length() ? line.charAt(i) : sep;
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        sb.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else if (i == line.length()) {
+                        return null;
+                    } else {
+                        sb.append(c);
+                    }
+                } else if (c == '"' && sb.length() == 0) {
+                    quoted = true;
+                } else if (c == sep) {
+                    if (n == 3) return null;
+                    String v = sb.toString().trim();
+                    if (v.isEmpty()) return null;
+                    f[n++] = v;
+                    sb.setLength(0);
+                } else {
+                    sb.append(c);
+                }
+            }
+            return n == 3 ? f : null;
+        }
+    }
+    static class LibraryManager {
+
+        static final int OK = 0, INVALID_ID = 1, ALREADY_ISSUED = 2, NOT_ISSUED = 3;
+        static final Metrics.Timer ISSUE_TIME = Metrics.timer("library.issue");
+        static final Metrics.Timer RETURN_TIME = Metrics.timer("library.return");
+        static final Metrics.Timer SEARCH_TIME = Metrics.timer("library.search");
+        static final Metrics.Timer SNAPSHOT_TIME = Metrics.timer("library.snapshot");
+        // Refused requests, by operation and reason
+        static final Metrics.Counter ISSUE_INVALID = Metrics.counter("library.issue.invalid_id");
+        static final Metrics.Counter ISSUE_ALREADY_ISSUED = Metrics.counter("library.issue.already_issued");
+        static final Metrics.Counter RETURN_INVALID = Metrics.counter("library.return.invalid_id");
+        static final Metrics.Counter RETURN_NOT_ISSUED = Metrics.counter("library.return.not_issued");
+
+        IntMap<Book> books = new IntMap<>();
+        IntMap<Member> members = new IntMap<>();
+        AtomicInteger lastBookId = new AtomicInteger();
+        AtomicInteger lastMemberId = new AtomicInteger();
+
+        File snapshotFile;
+        // Legacy CSV files, read only when no binary snapshot exists yet
+        File bookFile;
+        File memberFile;
+        Journal journal;
+        SearchIndex index = new SearchIndex();
+        NavigableSet<Book> byTitle = new ConcurrentSkipListSet<>(BY_TITLE);
+        AtomicBoolean compacting = new AtomicBoolean();
+        // Every mutation holds this shared from append until it is applied, taken before any
+        // book or member monitor; compaction holds it exclusively to rotate, so the snapshot
+        // sees every record the retired log holds
+        ReentrantReadWriteLock applying = new ReentrantReadWriteLock();
+        // Compactions triggered by log growth run here so the desk never waits on a snapshot
+        ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "library-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        CountDownLatch indexed = new CountDownLatch(1);
+        LongSupplier clock;
+        LoanWheel wheel;
+        // Books whose loan is past due, kept so the report never scans the catalog
+        IntSet overdue = new IntSet();
+        // Batched reminders waiting to be read, oldest dropped past REMINDER_BACKLOG
+        Deque<String> reminders = new ArrayDeque<>();
+        Timer ticker;
+
+        static final int PAGE_SIZE = 50;
+
+        // Fold the log into a fresh snapshot once it grows past this many records
+        static final int COMPACT_EVERY = 10000;
+        static final int REMINDER_BACKLOG = 10000;
+
+        LibraryManager() {
+            this(new File("."));
+        }
+        LibraryManager(File dir) {
+            this(dir, System::currentTimeMillis);
+        }
+        LibraryManager(File dir, LongSupplier clock) {
+            this.clock = clock;
+            wheel = new LoanWheel(clock.getAsLong());
+            snapshotFile = new File(dir, "library.dat");
+            bookFile = new File(dir, "books.txt");
+            memberFile = new File(dir, "members.txt");
+            journal = new Journal(new File(dir, "library.log"));
+            loadData();
+        }
+
+        // Add book
+        void addBook(String title, String author, String category) {
+            try {
+                int id = newBook(title, author, category);
+                System.out.println("Book added with ID: " + id);
+            } catch (UncheckedIOException e) {
+                notSaved(e);
+            }
+        }
+        static void notSaved(UncheckedIOException e) {
+            System.out.println("Not saved: " + e.getMessage() + " (" + e.getCause().getMessage() + ")");
+        }
+        // Every mutation is journaled before it is applied, so a failed write leaves nothing behind
+        int newBook(String title, String author, String category) {
+            int id = lastBookId.incrementAndGet();
+            Book b = new Book(id, title, author, category);
+            applying.readLock().lock();
+            try {
+                b.seq = journal.append("B", String.valueOf(id), title, author, category);
+                books.put(id, b);
+            } finally {
+                applying.readLock().unlock();
+            }
+            index.add(b);
+            byTitle.add(b);
+            maybeCompact();
+            return id;
+        }
+        // Rows skip the journal; the catalog is persisted once by a compaction at the end
+        CatalogImport importCatalog(File file) throws IOException {
+            awaitIndex();
+            CatalogImport report = new CatalogImport();
+            char sep = file.getName().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+            long start = System.nanoTime();
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+                String[] lines = new String[CatalogImport.CHUNK];
+                long lineNo = 0;
+                boolean first = true;
+                while (true) {
+                    int n = 0;
+                    String line;
+                    while (n < lines.length && (line = br.readLine()) != null) {
+                        if (first) {
+                            first = false;
+                            if (line.toLowerCase(Locale.ROOT).startsWith("title" + sep)) {
+                                lineNo++;
+                                continue;
+                            }
+                        }
+                        lines[n++] = line;
+                    }
+                    if (n == 0) break;
+                    String[][] rows = new String[n][];
+                    ForkJoinPool.commonPool().invoke(new CatalogImport.ParseTask(lines, rows, 0, n, sep));
+                    int valid = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (rows[i] != null) valid++;
+                        else if (!lines[i].isEmpty()) report.reject(lineNo + i + 1, "expected 3 non-empty fields");
+                    }
+                    // One atomic bump reserves IDs for the whole chunk
+                    int id = lastBookId.getAndAdd(valid);
+                    Book[] added = new Book[valid];
+                    for (int i = 0, k = 0; i < n; i++) {
+                        if (rows[i] == null) continue;
+                        Book b = new Book(++id, rows[i][0], rows[i][1], rows[i][2]);
+                        books.put(b.bookId, b);
+                        added[k++] = b;
+                    }
+                    Arrays.stream(added).parallel().forEach(b -> {
+                        index.add(b);
+                        byTitle.add(b);
+                    });
+                    for (int i = 0; i < n; i++) {
+                        if (!lines[i].isEmpty()) report.rows++;
+                    }
+                    report.imported += valid;
+                    lineNo += n;
+                    Arrays.fill(lines, 0, n, null);
+                }
+            }
+            if (report.imported > 0) compact();
+            report.seconds = (System.nanoTime() - start) / 1e9;
+            return report;
+        }
+        void addMember(String name, String email) {
+            try {
+                int id = newMember(name, email);
+                System.out.println("Member added with ID: " + id);
+            } catch (UncheckedIOException e) {
+                notSaved(e);
+            }
+        }
+        int newMember(String name, String email) {
+            int id = lastMemberId.incrementAndGet();
+            Member m = new Member(id, name, email);
+            applying.readLock().lock();
+            try {
+                m.seq = journal.append("M", String.valueOf(id), name, email);
+                members.put(id, m);
+            } finally {
+                applying.readLock().unlock();
+            }
+            maybeCompact();
+            return id;
+        }
+        void issueBook(int bookId, int memberId) {
+            try {
+                switch (issue(bookId, memberId)) {
+                    case OK: System.out.println("Book issued."); break;
+                    case ALREADY_ISSUED: System.out.println("Book already issued."); break;
+                    default: System.out.println("Invalid ID.");
+                }
+            } catch (UncheckedIOException e) {
+                notSaved(e);
+            }
+        }
+        // The book's monitor makes check-and-set atomic and keeps its log records in order;
+        // the member's monitor does the same for the member side
+        int issue(int bookId, int memberId) {
+            long start = System.nanoTime();
+            try {
+                Book b = books.get(bookId);
+                Member m = members.get(memberId);
+                if (b == null || m == null) {
+                    ISSUE_INVALID.inc();
+                    return INVALID_ID;
+                }
+                applying.readLock().lock();
+                try {
+                    synchronized (b) {
+                        if (b.isIssued) {
+                            ISSUE_ALREADY_ISSUED.inc();
+                            return ALREADY_ISSUED;
+                        }
+                        Loan l = new Loan(bookId, memberId, clock.getAsLong() + Loan.PERIOD_MS);
+                        long seq;
+                        synchronized (m) {
+                            seq = journal.append("I", String.valueOf(bookId), String.valueOf(memberId), String.valueOf(l.dueAt));
+                            m.issued.add(bookId);
+                            m.seq = seq;
+                        }
+                        b.seq = seq;
+                        b.loan = l;
+                        b.isIssued = true;
+                        wheel.schedule(l);
+                    }
+                } finally {
+                    applying.readLock().unlock();
+                }
+                maybeCompact();
+                return OK;
+            } finally {
+                ISSUE_TIME.stop(start);
+            }
+        }
+        void returnBook(int bookId, int memberId) {
+            try {
+                switch (giveBack(bookId, memberId)) {
+                    case OK: System.out.println("Book returned."); break;
+                    case NOT_ISSUED: System.out.println("Book is not issued to this member."); break;
+                    default: System.out.println("Invalid ID.");
+                }
+            } catch (UncheckedIOException e) {
+                notSaved(e);
+            }
+        }
+        int giveBack(int bookId, int memberId) {
+            long start = System.nanoTime();
+            try {
+                Book b = books.get(bookId);
+                Member m = members.get(memberId);
+                if (b == null || m == null) {
+                    RETURN_INVALID.inc();
+                    return INVALID_ID;
+                }
+                applying.readLock().lock();
+                try {
+                    synchronized (b) {
+                        if (!b.isIssued || !m.issued.contains(bookId)) {
+                            RETURN_NOT_ISSUED.inc();
+                            return NOT_ISSUED;
+                        }
+                        long now = clock.getAsLong();
+                        long fine = b.loan != null ? b.loan.fine(now) : 0;
+                        long seq;
+                        // The record carries the fine so the member side replays without the loan
+                        synchronized (m) {
+                            seq = journal.append("R", String.valueOf(bookId), String.valueOf(memberId),
+                                    String.valueOf(now), String.valueOf(fine));
+                            m.issued.remove(bookId);
+                            if (fine > 0) m.fines.addAndGet(fine);
+                            m.seq = seq;
+                        }
+                        b.seq = seq;
+                        settle(b);
+                        b.isIssued = false;
+                    }
+                } finally {
+                    applying.readLock().unlock();
+                }
+                maybeCompact();
+                return OK;
+            } finally {
+                RETURN_TIME.stop(start);
+            }
+        }
+        // Takes the loan off the wheel; caller holds the book's monitor
+        void settle(Book b) {
+            Loan l = b.loan;
+            if (l == null) return;
+            wheel.cancel(l);
+            overdue.remove(b.bookId);
+            b.loan = null;
+        }
+        // Runs every wheel tick: only loans whose next event is due are touched, and each
+        // member gets one reminder listing all of their loans that came up this tick
+        void tick() {
+            long now = clock.getAsLong();
+            List<Loan> fired = wheel.advance(now);
+            if (fired.isEmpty()) return;
+            Map<Integer, StringBuilder> batches = new TreeMap<>();
+            UncheckedIOException failure = null;
+            for (Loan l : fired) {
+                Book b = books.get(l.bookId);
+                applying.readLock().lock();
+                try {
+                    synchronized (b) {
+                        // Returned after it came off the wheel
+                        if (b.loan != l) continue;
+                        int next = l.nextStage(now);
+                        try {
+                            b.seq = journal.append("N", String.valueOf(l.bookId), String.valueOf(next));
+                        } catch (UncheckedIOException e) {
+                            // Not recorded, so not sent; the loan comes up again next tick
+                            wheel.schedule(l);
+                            failure = e;
+                            continue;
+                        }
+                        StringBuilder sb = batches.computeIfAbsent(l.memberId, k -> new StringBuilder());
+                        sb.append(sb.length() == 0 ? "" : "; ").append('"').append(b.title).append('"');
+                        if (l.overdue(now)) {
+                            overdue.add(l.bookId);
+                            sb.append(" overdue since ").append(date(l.dueAt)).append(", fine ").append(money(l.fine(now)));
+                        } else {
+                            sb.append(" due ").append(date(l.dueAt));
+                        }
+                        l.stage = next;
+                        wheel.schedule(l);
+                    }
+                } finally {
+                    applying.readLock().unlock();
+                }
+            }
+            if (failure != null) System.out.println("Reminders held back: " + failure.getMessage());
+            synchronized (reminders) {
+                for (Map.Entry<Integer, StringBuilder> e : batches.entrySet()) {
+                    Member m = members.get(e.getKey());
+                    reminders.add(date(now) + " to " + m.name + " <" + m.email + ">: " + e.getValue());
+                    if (reminders.size() > REMINDER_BACKLOG) reminders.poll();
+                }
+            }
+        }
+        List<String> drainReminders() {
+            synchronized (reminders) {
+                List<String> out = new ArrayList<>(reminders);
+                reminders.clear();
+                return out;
+            }
+        }
+        void showOverdue() {
+            tick();
+            List<String> sent = drainReminders();
+            if (!sent.isEmpty()) System.out.println("Reminders sent:");
+            for (String r : sent) System.out.println("  " + r);
+            long now = clock.getAsLong();
+            int[] ids = overdue.toArray();
+            Arrays.sort(ids);
+            int shown = 0;
+            for (int id : ids) {
+                Book b = books.get(id);
+                Loan l = b.loan;
+                if (l == null) continue;
+                Member m = members.get(l.memberId);
+                System.out.println(id + " | " + b.title + " | " + m.memberId + " " + m.name +
+                        " | Due: " + date(l.dueAt) + " | Fine: " + money(l.fine(now)));
+                shown++;
+            }
+            if (shown == 0) System.out.println("No overdue loans.");
+        }
+        void search(String key) {
+            for (int id : find(key)) books.get(id).display();
+        }
+        // Matching book IDs, best first
+        List<Integer> find(String key) {
+            awaitIndex();
+            long start = System.nanoTime();
+            List<Integer> ids = index.query(key);
+            SEARCH_TIME.stop(start);
+            return ids;
+        }
+        void sortBooks() {
+            awaitIndex();
+            for (Book b : byTitle) b.display();
+        }
+        // Titles from `from` (inclusive) up to `to` (exclusive); null means open-ended
+        void sortBooks(String from, String to, int page, int pageSize) {
+            for (Book b : titles(from, to, page * pageSize, pageSize)) b.display();
+        }
+        List<Book> titles(String from, String to, int offset, int limit) {
+            awaitIndex();
+            NavigableSet<Book> range = byTitle;
+            if (from != null) range = range.tailSet(probe(from), true);
+            if (to != null) range = range.headSet(probe(to), false);
+            List<Book> page = new ArrayList<>(Math.min(limit, PAGE_SIZE));
+            Iterator<Book> it = range.iterator();
+            for (int i = 0; i < offset && it.hasNext(); i++) it.next();
+            while (page.size() < limit && it.hasNext()) page.add(it.next());
+            return page;
+        }
+        // Sorts ahead of every real book with the same title
+        static Book probe(String title) {
+            return new Book(Integer.MIN_VALUE, title, "", "");
+        }
+        void loadData() {
+            boolean migrate = false;
+            long lastSeq = 0;
+            // Starting without the snapshot would let the next compaction overwrite it with
+            // whatever the log alone holds, so refuse until someone restores or drops it
+            File corrupt = new File(snapshotFile.getPath() + ".corrupt");
+            if (corrupt.exists()) {
+                throw new IllegalStateException(corrupt + " is unresolved: restore it as " + snapshotFile.getName()
+                        + ", or delete it to start from the log alone");
+            }
+            if (snapshotFile.exists()) {
+                try {
+                    lastSeq = Snapshot.read(snapshotFile, books, members);
+                } catch (IOException e) {
+                    snapshotFile.renameTo(corrupt);
+                    throw new IllegalStateException("Snapshot unreadable (" + e.getMessage() + "), set aside as "
+                            + corrupt + "; restore it as " + snapshotFile.getName()
+                            + ", or delete it to start from the log alone");
+                }
+            } else {
+                migrate = loadLegacy();
+            }
+            List<Journal.Record> records;
+            try {
+                records = journal.read();
+            } catch (IOException e) {
+                throw new IllegalStateException("Journal unreadable: " + e.getMessage());
+            }
+            for (int i = 0; i < records.size(); i++) {
+                Journal.Record r = records.get(i);
+                boolean tail = i == records.size() - 1 && r.file.equals(journal.file);
+                try {
+                    // A crash mid-append leaves a partial last line; its numbers may be cut short
+                    if (!r.complete) throw new IllegalArgumentException("record has no line end");
+                    replay(r.seq, r.fields);
+                } catch (RuntimeException e) {
+                    // Only the end of the live log can be torn; damage anywhere else is not ours to drop
+                    if (!tail) {
+                        throw new IllegalStateException("Journal " + r.file + " is corrupt at byte " + r.offset
+                                + " (" + e + "); refusing to start");
+                    }
+                    System.out.println("Dropping torn record at byte " + r.offset + " of " + r.file + " (" + e + ")");
+                    try {
+                        journal.truncate(r.offset);
+                    } catch (IOException te) {
+                        throw new IllegalStateException("Cannot truncate " + r.file + ": " + te.getMessage());
+                    }
+                    break;
+                }
+                lastSeq = Math.max(lastSeq, r.seq);
+            }
+            journal.nextSeq = lastSeq + 1;
+            try {
+                journal.open();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open journal " + journal.file + ": " + e.getMessage());
+            }
+            startLoans();
+            // A retired log means the last compaction never finished; finish it now
+            if ((migrate || journal.retired().exists()) && saveData()) journal.retired().delete();
+            for (Book b : books.values()) lastBookId.accumulateAndGet(b.bookId, Math::max);
+            for (Member m : members.values()) lastMemberId.accumulateAndGet(m.memberId, Math::max);
+            // Circulation can start right away; search and listings wait for the indexes
+            Thread indexer = new Thread(() -> {
+                for (Book b : books.values()) {
+                    index.add(b);
+                    byTitle.add(b);
+                }
+                indexed.countDown();
+            }, "library-indexer");
+            indexer.setDaemon(true);
+            indexer.start();
+        }
+        // Files every open loan on the wheel; loans from version 1 data start a fresh period
+        void startLoans() {
+            long now = clock.getAsLong();
+            for (Member m : members.values()) {
+                for (int id : m.issued.toArray()) {
+                    Book b = books.get(id);
+                    if (b != null && b.isIssued && b.loan == null) b.loan = new Loan(id, m.memberId, now + Loan.PERIOD_MS);
+                }
+            }
+            for (Book b : books.values()) {
+                Loan l = b.loan;
+                if (l == null) continue;
+                if (l.stage >= 2) overdue.add(b.bookId);
+                wheel.schedule(l);
+            }
+            ticker = new Timer("library-loans", true);
+            ticker.scheduleAtFixedRate(new TimerTask() {
+                public void run() {
+                    tick();
+                }
+            }, 0, LoanWheel.TICK_MS);
+        }
+        void awaitIndex() {
+            try {
+                indexed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        boolean loadLegacy() {
+            if (!bookFile.exists() && !memberFile.exists()) return false;
+            try {
+                if (bookFile.exists()) {
+                    BufferedReader br = new BufferedReader(new FileReader(bookFile));
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (line.isEmpty()) continue;
+                        Book b = Book.fromFile(line);
+                        books.put(b.bookId, b);
+                    }
+                    br.close();
+                }
+                if (memberFile.exists()) {
+                    BufferedReader br = new BufferedReader(new FileReader(memberFile));
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (line.isEmpty()) continue;
+                        Member m = Member.fromFile(line);
+                        members.put(m.memberId, m);
+                    }
+                    br.close();
+                }
+            } catch (Exception e) {
+                System.out.println("Legacy data load failed: " + e.getMessage());
+            }
+            return !books.isEmpty() || !members.isEmpty();
+        }
+        /*
+         * Each side of a record applies only if that book or member has not already seen it,
+         * so a log that overlaps a snapshot replays cleanly even when the snapshot caught one
+         * side of an operation and not the other. Records from logs written before sequences
+         * existed (seq 0) always apply.
+         */
+        void replay(long seq, String[] r) {
+            switch (r[0]) {
+                case "B": {
+                    int id = Integer.parseInt(r[1]);
+                    Book b = new Book(id, r[2], r[3], r[4]);
+                    b.seq = seq;
+                    books.putIfAbsent(id, b);
+                    break;
+                }
+                case "M": {
+                    int id = Integer.parseInt(r[1]);
+                    Member m = new Member(id, r[2], r[3]);
+                    m.seq = seq;
+                    members.putIfAbsent(id, m);
+                    break;
+                }
+                case "I": {
+                    Book b = books.get(Integer.parseInt(r[1]));
+                    Member m = members.get(Integer.parseInt(r[2]));
+                    if (b == null || m == null) break;
+                    if (newer(seq, b.seq)) {
+                        // Records written before due dates existed get a fresh loan period
+                        long due = r.length > 3 ? Long.parseLong(r[3]) : clock.getAsLong() + Loan.PERIOD_MS;
+                        b.isIssued = true;
+                        b.loan = new Loan(b.bookId, m.memberId, due);
+                        b.seq = seq;
+                    }
+                    if (newer(seq, m.seq)) {
+                        m.issued.add(b.bookId);
+                        m.seq = seq;
+                    }
+                    break;
+                }
+                case "R": {
+                    Book b = books.get(Integer.parseInt(r[1]));
+                    Member m = members.get(Integer.parseInt(r[2]));
+                    if (b == null || m == null) break;
+                    long fine = 0;
+                    if (r.length > 4) {
+                        fine = Long.parseLong(r[4]);
+                    } else if (r.length > 3 && b.loan != null && b.loan.memberId == m.memberId) {
+                        fine = b.loan.fine(Long.parseLong(r[3]));
+                    }
+                    if (newer(seq, m.seq)) {
+                        if (fine > 0) m.fines.addAndGet(fine);
+                        m.issued.remove(b.bookId);
+                        m.seq = seq;
+                    }
+                    if (newer(seq, b.seq)) {
+                        b.isIssued = false;
+                        b.loan = null;
+                        b.seq = seq;
+                    }
+                    break;
+                }
+                case "N": {
+                    Book b = books.get(Integer.parseInt(r[1]));
+                    if (b != null && b.loan != null && newer(seq, b.seq)) {
+                        b.loan.stage = Math.max(b.loan.stage, Integer.parseInt(r[2]));
+                        b.seq = seq;
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("unknown record type " + r[0]);
+            }
+        }
+        static boolean newer(long seq, long applied) {
+            return seq == 0 || seq > applied;
+        }
+        // At most one compaction is queued; records keep landing in the fresh log meanwhile.
+        // Desks only wait on it for the rotate, which takes the applying lock exclusively.
+        void maybeCompact() {
+            if (journal.records >= COMPACT_EVERY && compacting.compareAndSet(false, true)) {
+                compactor.execute(() -> {
+                    try {
+                        compact();
+                    } finally {
+                        compacting.set(false);
+                    }
+                });
+            }
+        }
+        // Retire the log, write a full snapshot, then drop the retired log it now covers.
+        // A retired log left by a failed snapshot is kept rather than rotated over.
+        synchronized void compact() {
+            if ((journal.retired().exists() || rotate()) && saveData()) journal.retired().delete();
+        }
+        boolean rotate() {
+            applying.writeLock().lock();
+            try {
+                return journal.rotate();
+            } finally {
+                applying.writeLock().unlock();
+            }
+        }
+        boolean saveData() {
+            long start = System.nanoTime();
+            try {
+                File tmp = new File(snapshotFile.getPath() + ".tmp");
+                Snapshot.write(tmp, books.values(), members.values());
+                Files.move(tmp.toPath(), snapshotFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                SNAPSHOT_TIME.stop(start);
+                return true;
+            } catch (Exception e) {
+                System.out.println("Snapshot failed: " + e.getMessage());
+                return false;
+            }
+        }
+        void close() {
+            if (ticker != null) ticker.cancel();
+            // Let a running compaction finish; an unfinished one is completed on the next start
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            journal.close();
+        }
+    }
+    // Hammers issue/return from 1..N threads and checks no book is ever held twice
+    static void stress(int bookCount, int memberCount, int opsPerThread) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(cores, 2); threads *= 2) {
+            File dir = Files.createTempDirectory("library-stress").toFile();
+            LibraryManager lib = new LibraryManager(dir);
+            for (int i = 0; i < bookCount; i++) lib.newBook("Book " + i, "Author " + (i % 100), "Cat " + (i % 10));
+            for (int i = 0; i < memberCount; i++) lib.newMember("Member " + i, "m" + i + "@lib");
+            AtomicIntegerArray holders = new AtomicIntegerArray(bookCount + 1);
+            AtomicLong issued = new AtomicLong();
+            AtomicLong doubleIssues = new AtomicLong();
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(() -> {
+                    ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        int b = 1 + rnd.nextInt(bookCount);
+                        int m = 1 + rnd.nextInt(memberCount);
+                        if (lib.issue(b, m) != LibraryManager.OK) continue;
+                        issued.incrementAndGet();
+                        if (holders.incrementAndGet(b) > 1) doubleIssues.incrementAndGet();
+                        holders.decrementAndGet(b);
+                        lib.giveBack(b, m);
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread w : workers) w.start();
+            for (Thread w : workers) {
+                try {
+                    w.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            double secs = (System.nanoTime() - start) / 1e9;
+            long leftover = lib.books.values().stream().filter(b -> b.isIssued).count()
+                    + lib.members.values().stream().mapToLong(m -> m.issued.size()).sum();
+            System.out.printf("threads=%d ops/sec=%.0f issued=%d doubleIssues=%d leftover=%d%n",
+                    threads, threads * (long) opsPerThread / secs, issued.get(), doubleIssues.get(), leftover);
+            lib.close();
+            for (File f : dir.listFiles()) f.delete();
+            dir.delete();
+        }
+        Metrics.dump(System.out);
+    }
+    // Simulated minute ticks over a 60-day window: the wheel against scanning every open loan
+    static void loans(int count) {
+        long day = Loan.DAY_MS;
+        Random rnd = new Random(42);
+        Loan[] all = new Loan[count];
+        for (int i = 0; i < count; i++) {
+            // Issued at some point over the first 30 days
+            all[i] = new Loan(i + 1, 1 + rnd.nextInt(1000), (long) (rnd.nextDouble() * 30 * day) + Loan.PERIOD_MS);
+        }
+        long ticks = 60 * day / LoanWheel.TICK_MS;
+        // A scan costs the same every tick, so a sample of ticks is enough
+        int sample = 200;
+        long hits = 0;
+        long start = System.nanoTime();
+        for (int t = 0; t < sample; t++) {
+            long now = (ticks / sample * t) * LoanWheel.TICK_MS;
+            for (Loan l : all) {
+                if (l.eventAt() <= now) hits++;
+            }
+        }
+        double scanNs = (System.nanoTime() - start) / (double) sample;
+        LoanWheel wheel = new LoanWheel(0);
+        for (Loan l : all) wheel.schedule(l);
+        long fired = 0, late = 0;
+        start = System.nanoTime();
+        for (long t = 1; t <= ticks; t++) {
+            long now = t * LoanWheel.TICK_MS;
+            for (Loan l : wheel.advance(now)) {
+                fired++;
+                if (l.eventAt() > now || l.eventAt() <= now - LoanWheel.TICK_MS) late++;
+                l.advanceStage(now);
+                wheel.schedule(l);
+            }
+        }
+        double wheelNs = (System.nanoTime() - start) / (double) ticks;
+        System.out.printf("loans=%d ticks=%d events=%d mistimed=%d wheel=%.0f ns/tick scan=%.0f ns/tick (%d due)%n",
+                count, ticks, fired, late, wheelNs, scanNs, hits);
+    }
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("stress")) {
+            stress(10000, 1000, args.length > 1 ? Integer.parseInt(args[1]) : 200000);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("loans")) {
+            loans(args.length > 1 ? Integer.parseInt(args[1]) : 1000000);
+            return;
+        }
+        Scanner sc = new Scanner(System.in);
+        LibraryManager lib;
+        try {
+            lib = new LibraryManager();
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        while (true) {
+            System.out.println("\n1. Add Book");
+            System.out.println("2. Add Member");
+            System.out.println("3. Issue Book");
+            System.out.println("4. Return Book");
+            System.out.println("5. Search");
+            System.out.println("6. Sort Books");
+            System.out.println("7. Import Catalog");
+            System.out.println("8. Metrics");
+            System.out.println("9. Overdue Loans");
+            System.out.println("10. Exit");
+            System.out.print("Choice: ");
+            int ch = sc.nextInt();
+            sc.nextLine();
+            switch (ch) {
+                case 1:
+                    System.out.print("Title: ");
+                    String t = sc.nextLine();
+                    System.out.print("Author: ");
+                    String a = sc.nextLine();
+                    System.out.print("Category: ");
+                    String c = sc.nextLine();
+                    lib.addBook(t, a, c);
+                    break;
+                case 2:
+                    System.out.print("Name: ");
+                    String n = sc.nextLine();
+                    System.out.print("Email: ");
+                    String e = sc.nextLine();
+                    lib.addMember(n, e);
+                    break;
+                case 3:
+                    System.out.print("Book ID: ");
+                    int b = sc.nextInt();
+                    System.out.print("Member ID: ");
+                    int m = sc.nextInt();
+                    lib.issueBook(b, m);
+                    break;
+                case 4:
+                    System.out.print("Book ID: ");
+                    int rb = sc.nextInt();
+                    System.out.print("Member ID: ");
+                    int rm = sc.nextInt();
+                    lib.returnBook(rb, rm);
+                    break;
+                case 5:
+                    System.out.print("Keyword: ");
+                    String k = sc.nextLine();
+                    lib.search(k);
+                    break;
+                case 6:
+                    System.out.print("From title (blank for start): ");
+                    String from = sc.nextLine();
+                    System.out.print("To title (blank for end): ");
+                    String to = sc.nextLine();
+                    System.out.print("Page (0 for all): ");
+                    int page = sc.nextInt();
+                    sc.nextLine();
+                    if (from.isEmpty() && to.isEmpty() && page == 0) {
+                        lib.sortBooks();
+                    } else {
+                        lib.sortBooks(from.isEmpty() ? null : from, to.isEmpty() ? null : to,
+                                Math.max(page - 1, 0), LibraryManager.PAGE_SIZE);
+                    }
+                    break;
+                case 7:
+                    System.out.print("CSV/TSV file (title, author, category): ");
+                    String path = sc.nextLine();
+                    try {
+                        lib.importCatalog(new File(path)).print();
+                    } catch (IOException ex) {
+                        System.out.println("Import failed: " + ex.getMessage());
+                    }
+                    break;
+                case 8:
+                    Metrics.dump(System.out);
+                    break;
+                case 9:
+                    lib.showOverdue();
+                    break;
+                case 10:
+                    lib.close();
+                    System.out.println("Exiting...");
+                    return;
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Process-wide counters and latency timers, registered by name and shared by every
+ * program in this directory. Recording never locks or allocates: counters are LongAdders,
+ * and a timer is a fixed array of log-linear buckets (8 per power of two, so any reported
+ * value is within 12.5% of the truth) striped by thread to keep writers off each other's
+ * cache lines. Percentiles are read from a snapshot that sums the stripes.
+ *
+ *   long start = System.nanoTime();
+ *   ...
+ *   TIMER.stop(start);
+ */
+class Metrics {
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+
+    static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new Counter());
+    }
+
+    static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, n -> new Timer());
+    }
+
+    static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        void inc() {
+            value.increment();
+        }
+
+        void add(long n) {
+            value.add(n);
+        }
+
+        long sum() {
+            return value.sum();
+        }
+    }
+
+    static final class Timer {
+        static final int SUB_BITS = 3;
+        static final int SUB = 1 << SUB_BITS;
+        static final int BUCKETS = (64 - SUB_BITS + 1) << SUB_BITS;
+        static final int STRIPES = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+        // Stripe s owns buckets [s * BUCKETS, (s + 1) * BUCKETS)
+        private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+
+        static int bucket(long nanos) {
+            if (nanos < SUB) {
+                return (int) Math.max(nanos, 0);
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(nanos);
+            return ((exp - SUB_BITS + 1) << SUB_BITS) + (int) ((nanos >>> (exp - SUB_BITS)) & (SUB - 1));
+        }
+
+        // Smallest value that lands in bucket b
+        static long lowerBound(int b) {
+            if (b < SUB) {
+                return b;
+            }
+            int exp = (b >>> SUB_BITS) + SUB_BITS - 1;
+            return (long) (SUB + (b & (SUB - 1))) << (exp - SUB_BITS);
+        }
+
+        static long upperBound(int b) {
+            return b + 1 < BUCKETS ? lowerBound(b + 1) - 1 : Long.MAX_VALUE;
+        }
+
+        @SuppressWarnings("deprecation")
+        void record(long nanos) {
+            int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+            counts.getAndIncrement(stripe * BUCKETS + bucket(nanos));
+        }
+
+        void stop(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        Snapshot snapshot() {
+            long[] merged = new long[BUCKETS];
+            for (int i = 0; i < counts.length(); i++) {
+                merged[i % BUCKETS] += counts.get(i);
+            }
+            return new Snapshot(merged);
+        }
+    }
+
+    static final class Snapshot {
+        final long[] buckets;
+        final long count;
+
+        Snapshot(long[] buckets) {
+            this.buckets = buckets;
+            long n = 0;
+            for (long c : buckets) {
+                n += c;
+            }
+            count = n;
+        }
+
+        // Upper edge of the bucket holding the q-th quantile, in nanoseconds
+        long quantile(double q) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= rank) {
+                    return Timer.upperBound(b);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        // Estimated from bucket midpoints
+        double mean() {
+            if (count == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                if (buckets[b] != 0) {
+                    sum += buckets[b] * (Timer.lowerBound(b) / 2.0 + Timer.upperBound(b) / 2.0);
+                }
+            }
+            return sum / count;
+        }
+
+        long max() {
+            for (int b = buckets.length - 1; b >= 0; b--) {
+                if (buckets[b] != 0) {
+                    return Timer.upperBound(b);
+                }
+            }
+            return 0;
+        }
+    }
+
+    static Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> all = new TreeMap<>();
+        TIMERS.forEach((name, t) -> all.put(name, t.snapshot()));
+        return all;
+    }
+
+    static void dump(PrintStream out) {
+        out.println("------ Metrics (latency in microseconds) ------");
+        for (Map.Entry<String, Snapshot> e : snapshot().entrySet()) {
+            Snapshot s = e.getValue();
+            if (s.count == 0) {
+                continue;
+            }
+            out.printf("%-24s count=%-10d mean=%-10.1f p50=%-10.1f p99=%-10.1f p999=%-10.1f max=%.1f%n",
+                    e.getKey(), s.count, s.mean() / 1e3, s.quantile(0.5) / 1e3, s.quantile(0.99) / 1e3,
+                    s.quantile(0.999) / 1e3, s.max() / 1e3);
+        }
+        COUNTERS.forEach((name, c) -> out.printf("%-24s %d%n", name, c.sum()));
+    }
+
+    // Single-line form, "name count p50 p99 p999" per timer with ';' between timers
+    static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Snapshot> e : snapshot().entrySet()) {
+            Snapshot s = e.getValue();
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(e.getKey()).append(' ').append(s.count).append(' ').append(s.quantile(0.5))
+                    .append(' ').append(s.quantile(0.99)).append(' ').append(s.quantile(0.999));
+        }
+        COUNTERS.forEach((name, c) -> sb.append(sb.length() > 0 ? ";" : "").append(name).append(' ').append(c.sum()));
+        return sb.toString();
+    }
+
+    // Cost of one record, alone and with the two nanoTime reads around it, from 1..N threads
+    public static void benchmark(long ops) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Timer timer = new Timer();
+        Counter counter = new Counter();
+        for (int threads = 1; threads <= Math.max(cores, 2); threads *= 2) {
+            String[] names = {"empty loop", "Counter.inc", "Timer.record", "nanoTime x2", "nanoTime x2 + stop"};
+            for (int mode = 0; mode < names.length; mode++) {
+                double best = Double.MAX_VALUE;
+                for (int round = 0; round < 5; round++) {
+                    final int m = mode;
+                    long[] sinks = new long[threads];
+                    Thread[] workers = new Thread[threads];
+                    long start = System.nanoTime();
+                    for (int t = 0; t < threads; t++) {
+                        final int id = t;
+                        workers[t] = new Thread(() -> sinks[id] = run(m, timer, counter, ops));
+                        workers[t].start();
+                    }
+                    for (Thread w : workers) {
+                        w.join();
+                    }
+                    best = Math.min(best, (System.nanoTime() - start) / (double) ops);
+                }
+                System.out.printf("threads=%d %-20s ns/op=%.2f%n", threads, names[mode], best);
+            }
+        }
+        System.out.println("(" + (timer.snapshot().count + counter.sum() > 0 ? 1 : 0) + ")");
+    }
+
+    private static long run(int mode, Timer timer, Counter counter, long ops) {
+        long sink = 0;
+        for (long i = 0; i < ops; i++) {
+            switch (mode) {
+                case 0:
+                    sink += i;
+                    break;
+                case 1:
+                    counter.inc();
+                    break;
+                case 2:
+                    timer.record(i & 0xFFFFF);
+                    break;
+                case 3:
+                    sink += System.nanoTime() - System.nanoTime();
+                    break;
+                default:
+                    timer.stop(System.nanoTime());
+            }
+        }
+        return sink;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        benchmark(20_000_000);
+    }
+}
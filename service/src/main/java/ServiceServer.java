@@ -0,0 +1,483 @@
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Line protocol over TCP for the library and the bank. A request is one line of
+ * tab-separated fields, command first; every request gets exactly one response line,
+ * "OK[\t<value>]" or "ERR\t<reason>", in request order. Clients may pipeline: the server
+ * answers everything already buffered before flushing, and waits for journal durability
+ * once per flush rather than once per request.
+ *
+ *   PING                                  -> OK
+ *   METRICS                               -> OK name count p50 p99 p999;... (nanoseconds)
+ *   BOOK.ADD     title author category    -> OK id
+ *   MEMBER.ADD   name email               -> OK id
+ *   ISSUE        bookId memberId          -> OK | ERR INVALID_ID | ERR ALREADY_ISSUED
+ *   RETURN       bookId memberId          -> OK | ERR INVALID_ID | ERR NOT_ISSUED
+ *   SEARCH       query                    -> OK id,id,... (best first, at most 50)
+ *   ACCT.OPEN    name deposit email phone -> OK accountNumber
+ *   BALANCE      account                  -> OK balance
+ *   DEPOSIT      account amount           -> OK newBalance
+ *   WITHDRAW     account amount           -> OK newBalance | ERR INSUFFICIENT_FUNDS
+ *   TRANSFER     from to amount           -> OK | ERR INSUFFICIENT_FUNDS | ...
+ *   QUIT                                  -> closes the connection
+ *
+ * Amounts are plain decimal rupees with at most two fractional digits, up to
+ * Money.MAX_MINOR; anything else is ERR INVALID_AMOUNT. A request that fails inside the
+ * stores is answered with an ERR line and the connection stays open.
+ */
+class ServiceServer {
+    static final int DEFAULT_PORT = 7070;
+    static final int SEARCH_LIMIT = 50;
+    static final String BAD_ARGUMENTS = "ERR\tBAD_ARGUMENTS";
+    // One counter per distinct ERR reply, e.g. "service.err.insufficient_funds"
+    static final Map<String, Metrics.Counter> ERRORS = new ConcurrentHashMap<>();
+
+    private final LibrarySystem.LibraryManager library;
+    private final AccountStore accounts;
+
+    ServiceServer(LibrarySystem.LibraryManager library, AccountStore accounts) {
+        this.library = library;
+        this.accounts = accounts;
+    }
+
+    // One virtual thread per connection where the JDK has them (21+), else a cached pool of small-stack threads
+    static ExecutorService connectionExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(null, r, "service-connection", 256 * 1024);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    void serve(int port) throws IOException {
+        ExecutorService executor = connectionExecutor();
+        try (ServerSocket server = new ServerSocket()) {
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress(port), 16_384);
+            System.out.println("Serving on port " + port + " (" + executor.getClass().getSimpleName() + ")");
+            while (true) {
+                Socket socket = server.accept();
+                executor.execute(() -> handle(socket));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), 8192);
+            Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), 8192);
+            // Highest journal sequence written for responses not yet flushed
+            long[] pending = {0};
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals("QUIT")) {
+                    break;
+                }
+                String reply = execute(line, pending);
+                if (reply.startsWith("ERR")) {
+                    ERRORS.computeIfAbsent(reply, r -> Metrics.counter("service.err." + r.substring(4).toLowerCase(Locale.ROOT))).inc();
+                }
+                out.write(reply);
+                out.write('\n');
+                if (!in.ready()) {
+                    if (pending[0] > 0) {
+                        accounts.getJournal().awaitDurable(pending[0]);
+                        pending[0] = 0;
+                    }
+                    out.flush();
+                }
+            }
+            if (pending[0] > 0) {
+                accounts.getJournal().awaitDurable(pending[0]);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Client went away; nothing to report back to
+        } catch (UncheckedIOException e) {
+            // Unflushed replies are not sent, since their journal records may not be durable
+            System.out.println("Closing connection after journal failure: " + e.getMessage());
+        }
+    }
+
+    String execute(String line, long[] pending) {
+        String[] f = line.split("\t", -1);
+        try {
+            switch (f[0]) {
+                case "PING":
+                    return "OK";
+                case "METRICS":
+                    return "OK\t" + Metrics.summary();
+                case "BOOK.ADD":
+                    return arity(f, 4) ? "OK\t" + library.newBook(f[1], f[2], f[3]) : BAD_ARGUMENTS;
+                case "MEMBER.ADD":
+                    return arity(f, 3) ? "OK\t" + library.newMember(f[1], f[2]) : BAD_ARGUMENTS;
+                case "ISSUE":
+                    return arity(f, 3) ? libraryStatus(library.issue(Integer.parseInt(f[1]), Integer.parseInt(f[2]))) : BAD_ARGUMENTS;
+                case "RETURN":
+                    return arity(f, 3) ? libraryStatus(library.giveBack(Integer.parseInt(f[1]), Integer.parseInt(f[2]))) : BAD_ARGUMENTS;
+                case "SEARCH":
+                    return arity(f, 2) ? search(f[1]) : BAD_ARGUMENTS;
+                case "ACCT.OPEN":
+                    return arity(f, 5) ? openAccount(f, pending) : BAD_ARGUMENTS;
+                case "BALANCE":
+                    return arity(f, 2) ? balance(f[1]) : BAD_ARGUMENTS;
+                case "DEPOSIT":
+                case "WITHDRAW":
+                    return arity(f, 3) ? post(f[0].equals("DEPOSIT"), f[1], f[2], pending) : BAD_ARGUMENTS;
+                case "TRANSFER":
+                    return arity(f, 4) ? transfer(f[1], f[2], f[3], pending) : BAD_ARGUMENTS;
+                default:
+                    return "ERR\tUNKNOWN_COMMAND";
+            }
+        } catch (NumberFormatException e) {
+            return "ERR\tBAD_NUMBER";
+        } catch (ArithmeticException e) {
+            return "ERR\tBALANCE_LIMIT";
+        } catch (IllegalArgumentException e) {
+            return "ERR\tINVALID_ARGUMENT";
+        } catch (UncheckedIOException e) {
+            return "ERR\tSTORAGE_FAILURE";
+        } catch (RuntimeException e) {
+            return "ERR\tINTERNAL";
+        }
+    }
+
+    // Digits with an optional point and up to two decimals; Money.INVALID for anything else
+    static long parseAmount(String s) {
+        long minor = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                minor = minor * 10 + (c - '0');
+                digits++;
+                if ((decimals >= 0 && ++decimals > 2) || minor > Money.MAX_MINOR) {
+                    return Money.INVALID;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return Money.INVALID;
+            }
+        }
+        if (digits == 0) {
+            return Money.INVALID;
+        }
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            minor *= 10;
+        }
+        return minor > Money.MAX_MINOR ? Money.INVALID : minor;
+    }
+
+    private static boolean arity(String[] f, int n) {
+        return f.length == n;
+    }
+
+    private static String libraryStatus(int status) {
+        switch (status) {
+            case LibrarySystem.LibraryManager.OK:
+                return "OK";
+            case LibrarySystem.LibraryManager.ALREADY_ISSUED:
+                return "ERR\tALREADY_ISSUED";
+            case LibrarySystem.LibraryManager.NOT_ISSUED:
+                return "ERR\tNOT_ISSUED";
+            default:
+                return "ERR\tINVALID_ID";
+        }
+    }
+
+    private String search(String query) {
+        StringBuilder sb = new StringBuilder("OK\t");
+        int shown = 0;
+        for (int id : library.find(query)) {
+            if (shown++ == SEARCH_LIMIT) {
+                break;
+            }
+            if (shown > 1) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+
+    // The number goes out with the batch's flush, once the OPEN record is durable
+    private String openAccount(String[] f, long[] pending) {
+        long deposit = parseAmount(f[2]);
+        if (deposit < 0) {
+            return "ERR\tINVALID_AMOUNT";
+        }
+        Account a = new Account(accounts.nextAccountNumber(), f[1], deposit / 100.0, f[3], f[4]);
+        pending[0] = Math.max(pending[0], accounts.post(a));
+        return "OK\t" + a.getAccountNumber();
+    }
+
+    private String balance(String number) {
+        Account a = accounts.get(Integer.parseInt(number));
+        return a == null ? "ERR\tNO_ACCOUNT" : "OK\t" + Money.format(a.getBalance());
+    }
+
+    private String post(boolean deposit, String number, String amount, long[] pending) {
+        Account a = accounts.get(Integer.parseInt(number));
+        if (a == null) {
+            return "ERR\tNO_ACCOUNT";
+        }
+        long minor = parseAmount(amount);
+        if (minor <= 0) {
+            return "ERR\tINVALID_AMOUNT";
+        }
+        long seq;
+        long balance;
+        synchronized (a) {
+            seq = deposit ? a.depositMinor(minor) : a.withdrawMinor(minor);
+            balance = a.getBalance();
+        }
+        if (seq < 0) {
+            return deposit ? "ERR\tBALANCE_LIMIT" : "ERR\tINSUFFICIENT_FUNDS";
+        }
+        pending[0] = Math.max(pending[0], seq);
+        return "OK\t" + Money.format(balance);
+    }
+
+    private String transfer(String fromNumber, String toNumber, String amount, long[] pending) {
+        Account from = accounts.get(Integer.parseInt(fromNumber));
+        Account to = accounts.get(Integer.parseInt(toNumber));
+        if (from == null || to == null) {
+            return "ERR\tNO_ACCOUNT";
+        }
+        long minor = parseAmount(amount);
+        if (minor <= 0) {
+            return "ERR\tINVALID_AMOUNT";
+        }
+        long seq = Ledger.post(from, to, minor);
+        switch ((int) Math.min(seq, 0)) {
+            case 0:
+                pending[0] = Math.max(pending[0], seq);
+                return "OK";
+            case -Ledger.INSUFFICIENT_FUNDS:
+                return "ERR\tINSUFFICIENT_FUNDS";
+            case -Ledger.SAME_ACCOUNT:
+                return "ERR\tSAME_ACCOUNT";
+            case -Ledger.BALANCE_LIMIT:
+                return "ERR\tBALANCE_LIMIT";
+            default:
+                return "ERR\tINVALID_AMOUNT";
+        }
+    }
+
+    /*
+     * Load generator: opens `connections` sockets from a single selector thread and keeps up
+     * to `pipeline` requests in flight on each until every connection has had `requests`
+     * answered. Latency is measured per request from the write to its response line.
+     */
+    static final class LoadClient {
+        final String host;
+        final int port;
+        final int connections, requests, pipeline;
+        final int[] accountNumbers;
+        final int[] bookIds;
+        final int memberId;
+
+        LoadClient(String host, int port, int connections, int requests, int pipeline) throws IOException {
+            this.host = host;
+            this.port = port;
+            this.connections = connections;
+            this.requests = requests;
+            this.pipeline = pipeline;
+            accountNumbers = new int[64];
+            bookIds = new int[64];
+            // Fixtures go through one ordinary blocking connection before the run starts
+            try (Socket s = new Socket(host, port)) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+                for (int i = 0; i < accountNumbers.length; i++) {
+                    out.write("ACCT.OPEN\tLoad " + i + "\t1000000\tload" + i + "@example.com\t" + (9000000000L + i) + "\n");
+                    out.write("BOOK.ADD\tLoad Test Volume " + i + "\tBench Author\tTesting\n");
+                }
+                out.write("MEMBER.ADD\tLoad Member\tload@example.com\n");
+                out.flush();
+                for (int i = 0; i < accountNumbers.length; i++) {
+                    accountNumbers[i] = Integer.parseInt(in.readLine().split("\t")[1]);
+                    bookIds[i] = Integer.parseInt(in.readLine().split("\t")[1]);
+                }
+                memberId = Integer.parseInt(in.readLine().split("\t")[1]);
+            }
+        }
+
+        // A mix of reads, durable writes, circulation and search
+        String request(int conn, int n) {
+            int k = (conn * 31 + n) & 63;
+            switch (n & 7) {
+                case 0:
+                case 1:
+                case 2:
+                    return "BALANCE\t" + accountNumbers[k] + "\n";
+                case 3:
+                case 4:
+                    return "DEPOSIT\t" + accountNumbers[k] + "\t1.25\n";
+                case 5:
+                    return "ISSUE\t" + bookIds[k] + "\t" + memberId + "\n";
+                case 6:
+                    return "RETURN\t" + bookIds[k] + "\t" + memberId + "\n";
+                default:
+                    return "SEARCH\tload test\n";
+            }
+        }
+
+        static final class Conn {
+            final int id;
+            final SocketChannel channel;
+            final ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+            ByteBuffer out = ByteBuffer.allocate(0);
+            final long[] sentAt;
+            int sent, received;
+
+            Conn(int id, SocketChannel channel, int pipeline) {
+                this.id = id;
+                this.channel = channel;
+                sentAt = new long[pipeline];
+            }
+        }
+
+        void run() throws IOException {
+            Selector selector = Selector.open();
+            Conn[] conns = new Conn[connections];
+            for (int i = 0; i < connections; i++) {
+                SocketChannel ch = SocketChannel.open(new InetSocketAddress(host, port));
+                ch.configureBlocking(false);
+                ch.socket().setTcpNoDelay(true);
+                conns[i] = new Conn(i, ch, pipeline);
+                ch.register(selector, SelectionKey.OP_READ, conns[i]);
+            }
+            long total = (long) connections * requests;
+            long[] latencies = new long[(int) total];
+            int recorded = 0;
+            long errors = 0;
+            long start = System.nanoTime();
+            for (Conn c : conns) {
+                fill(c, selector);
+            }
+            int done = 0;
+            while (done < connections) {
+                selector.select();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Conn c = (Conn) key.attachment();
+                    if (key.isValid() && key.isWritable()) {
+                        c.channel.write(c.out);
+                        if (!c.out.hasRemaining()) {
+                            key.interestOps(SelectionKey.OP_READ);
+                        }
+                    }
+                    if (!key.isValid() || !key.isReadable()) {
+                        continue;
+                    }
+                    if (c.channel.read(c.in) < 0) {
+                        throw new IOException("Server closed connection " + c.id);
+                    }
+                    long now = System.nanoTime();
+                    c.in.flip();
+                    int lineStart = c.in.position();
+                    for (int i = c.in.position(); i < c.in.limit(); i++) {
+                        if (c.in.get(i) != '\n') {
+                            continue;
+                        }
+                        if (c.in.get(lineStart) == 'E') {
+                            errors++;
+                        }
+                        latencies[recorded++] = now - c.sentAt[c.received % pipeline];
+                        c.received++;
+                        lineStart = i + 1;
+                    }
+                    c.in.position(lineStart);
+                    c.in.compact();
+                    if (c.received == requests) {
+                        done++;
+                        key.cancel();
+                        c.channel.close();
+                    } else {
+                        fill(c, selector);
+                    }
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            selector.close();
+            Arrays.sort(latencies, 0, recorded);
+            System.out.printf("connections=%d pipeline=%d requests=%d ops/sec=%.0f p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus errors=%d%n",
+                    connections, pipeline, recorded, recorded / seconds,
+                    latencies[(int) (recorded * 0.50)] / 1e3, latencies[(int) (recorded * 0.99)] / 1e3,
+                    latencies[(int) (recorded * 0.999)] / 1e3, latencies[recorded - 1] / 1e3, errors);
+        }
+
+        // Tops the connection up to `pipeline` requests in flight
+        private void fill(Conn c, Selector selector) throws IOException {
+            if (c.out.hasRemaining()) {
+                return;
+            }
+            StringBuilder sb = new StringBuilder();
+            long now = System.nanoTime();
+            while (c.sent < requests && c.sent - c.received < pipeline) {
+                sb.append(request(c.id, c.sent));
+                c.sentAt[c.sent % pipeline] = now;
+                c.sent++;
+            }
+            if (sb.length() == 0) {
+                return;
+            }
+            c.out = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            c.channel.write(c.out);
+            if (c.out.hasRemaining()) {
+                c.channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("load")) {
+            String host = args.length > 1 ? args[1] : "localhost";
+            int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+            int connections = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+            int requests = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+            int pipeline = args.length > 5 ? Integer.parseInt(args[5]) : 8;
+            new LoadClient(host, port, connections, requests, pipeline).run();
+            return;
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        // Same data locations as the interactive programs
+        LibrarySystem.LibraryManager library = new LibrarySystem.LibraryManager();
+        BankStorage storage = BankStorage.open(new File("bank-data"), true);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            library.close();
+            try {
+                storage.close();
+            } catch (IOException e) {
+                System.out.println("Could not close bank data: " + e.getMessage());
+            }
+        }));
+        new ServiceServer(library, storage.accounts()).serve(port);
+    }
+}
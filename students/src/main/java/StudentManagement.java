@@ -0,0 +1,990 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+class InvalidMarksException extends Exception {
+    public InvalidMarksException(String msg) { super(msg); }
+}
+
+class Student {
+    private int roll;
+    private String name;
+    // Marks live in the shared column store; this is the student's row there
+    private MarksTable table;
+    private int row;
+
+    public Student(int roll, String name, int[] marks, MarksTable table) throws InvalidMarksException {
+        validate(marks, table.subjects());
+        this.roll = roll;
+        this.name = name;
+        this.table = table;
+        this.row = table.append(marks, 0);
+    }
+
+    // For rows already validated and appended to the table, e.g. by bulk ingestion
+    Student(int roll, String name, MarksTable table, int row) {
+        this.roll = roll;
+        this.name = name;
+        this.table = table;
+        this.row = row;
+    }
+
+    static void validate(int[] marks, int subjects) throws InvalidMarksException {
+        if (marks.length != subjects)
+            throw new InvalidMarksException("Expected " + subjects + " marks, got " + marks.length);
+        int bad = invalidSubject(marks, 0, subjects);
+        if (bad >= 0)
+            throw new InvalidMarksException("Invalid marks for subject " + (bad + 1) + ": " + marks[bad]);
+    }
+
+    // Index of the first out-of-range mark in marks[off..off+n), or -1 if all are valid
+    static int invalidSubject(int[] marks, int off, int n) {
+        for (int i = 0; i < n; i++) {
+            if (marks[off + i] < 0 || marks[off + i] > 100) return i;
+        }
+        return -1;
+    }
+
+    public int getRoll() { return roll; }
+    public String getName() { return name; }
+    public int getRow() { return row; }
+
+    public void display() {
+        System.out.println("Roll Number: " + roll);
+        System.out.println("Student Name: " + name);
+        StringBuilder sb = new StringBuilder("Marks:");
+        for (int s = 0; s < table.subjects(); s++) sb.append(' ').append(table.get(s, row));
+        System.out.println(sb);
+        double avg = table.average(row);
+        System.out.println("Average: " + avg);
+        System.out.println("Result: " + (avg >= MarksTable.PASS_MARK ? "Pass" : "Fail"));
+    }
+}
+
+/*
+ * Struct-of-arrays marks storage: one byte column per subject, indexed by row.
+ * Marks are 0..100, so a byte per mark keeps whole cohorts cache-resident.
+ */
+class MarksTable {
+    public static final int PASS_MARK = 40;
+    // Below this many rows a parallel aggregate just runs on the calling thread
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private byte[][] columns;
+    private int rows = 0;
+
+    public MarksTable(int subjects) {
+        columns = new byte[subjects][16];
+    }
+
+    public int subjects() { return columns.length; }
+    public int rows() { return rows; }
+    public int get(int subject, int row) { return columns[subject][row]; }
+
+    // Appends one row taken from marks[off..off+subjects)
+    public int append(int[] marks, int off) {
+        if (rows == columns[0].length) {
+            for (int s = 0; s < columns.length; s++) columns[s] = Arrays.copyOf(columns[s], rows * 2);
+        }
+        for (int s = 0; s < columns.length; s++) columns[s][rows] = (byte) marks[off + s];
+        return rows++;
+    }
+
+    public int total(int row) {
+        int sum = 0;
+        for (byte[] col : columns) sum += col[row];
+        return sum;
+    }
+
+    public double average(int row) { return total(row) / (double) columns.length; }
+
+    public SubjectStats stats(int subject, boolean parallel) {
+        byte[] col = columns[subject];
+        Partial p = parallel && rows >= PARALLEL_THRESHOLD
+                ? ForkJoinPool.commonPool().invoke(new AggregateTask(col, 0, rows))
+                : Partial.of(col, 0, rows);
+        return p.finish(subject, rows);
+    }
+
+    public SubjectStats[] stats(boolean parallel) {
+        SubjectStats[] all = new SubjectStats[columns.length];
+        for (int s = 0; s < columns.length; s++) all[s] = stats(s, parallel);
+        return all;
+    }
+
+    // Running aggregates over one slice of a column; slices merge by adding fields
+    static final class Partial {
+        long sum, sumSq;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE, pass;
+        final long[] histogram = new long[101];
+
+        static Partial of(byte[] col, int from, int to) {
+            Partial p = new Partial();
+            // Pure reductions with no stores, which C2 vectorizes
+            long sum = 0, sumSq = 0;
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE, pass = 0;
+            for (int i = from; i < to; i++) {
+                int v = col[i];
+                sum += v;
+                sumSq += v * v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+                pass += v >= PASS_MARK ? 1 : 0;
+            }
+            p.sum = sum;
+            p.sumSq = sumSq;
+            p.min = min;
+            p.max = max;
+            p.pass = pass;
+            // Percentiles come from a counting histogram; marks only span 0..100
+            long[] h = p.histogram;
+            for (int i = from; i < to; i++) h[col[i]]++;
+            return p;
+        }
+
+        Partial merge(Partial o) {
+            sum += o.sum;
+            sumSq += o.sumSq;
+            min = Math.min(min, o.min);
+            max = Math.max(max, o.max);
+            pass += o.pass;
+            for (int i = 0; i < histogram.length; i++) histogram[i] += o.histogram[i];
+            return this;
+        }
+
+        SubjectStats finish(int subject, int n) {
+            if (n == 0) return new SubjectStats(subject, 0, 0, 0, 0, 0, 0, new int[SubjectStats.PERCENTILES.length]);
+            double mean = sum / (double) n;
+            double variance = Math.max(0, sumSq / (double) n - mean * mean);
+            int[] pct = new int[SubjectStats.PERCENTILES.length];
+            for (int k = 0; k < pct.length; k++) {
+                // Nearest-rank percentile
+                long rank = Math.max(1, (long) Math.ceil(SubjectStats.PERCENTILES[k] / 100.0 * n));
+                long seen = 0;
+                int mark = 0;
+                while ((seen += histogram[mark]) < rank) mark++;
+                pct[k] = mark;
+            }
+            return new SubjectStats(subject, n, mean, min, max, Math.sqrt(variance), pass / (double) n, pct);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class AggregateTask extends RecursiveTask<Partial> {
+        final byte[] col;
+        final int from, to;
+
+        AggregateTask(byte[] col, int from, int to) {
+            this.col = col;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= PARALLEL_THRESHOLD) return Partial.of(col, from, to);
+            int mid = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(col, from, mid);
+            left.fork();
+            Partial right = new AggregateTask(col, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+}
+
+/*
+ * Merit ranking over total marks. Totals are small integers (0..100 per subject), so a
+ * Fenwick tree over one bucket per possible total answers "how many scored at most S"
+ * in O(log buckets); each bucket also keeps its students in arrival order for top-K.
+ */
+class RankIndex {
+    private final long[] tree;
+    private final Student[][] byScore;
+    private final int[] bucketSize;
+    private long count = 0;
+
+    public RankIndex(int maxScore) {
+        tree = new long[maxScore + 2];
+        byScore = new Student[maxScore + 1][];
+        bucketSize = new int[maxScore + 1];
+    }
+
+    public synchronized void add(Student s, int score) {
+        for (int i = score + 1; i < tree.length; i += i & -i) tree[i]++;
+        Student[] bucket = byScore[score];
+        if (bucket == null) bucket = byScore[score] = new Student[4];
+        else if (bucketSize[score] == bucket.length) bucket = byScore[score] = Arrays.copyOf(bucket, bucket.length * 2);
+        bucket[bucketSize[score]++] = s;
+        count++;
+    }
+
+    // Students with total <= score
+    private long atMost(int score) {
+        long n = 0;
+        for (int i = Math.min(score, byScore.length - 1) + 1; i > 0; i -= i & -i) n += tree[i];
+        return n;
+    }
+
+    public synchronized long size() { return count; }
+
+    // Standard competition rank: 1 + number of students with a strictly higher total
+    public synchronized long rank(int score) { return count - atMost(score) + 1; }
+
+    // Percentage of students whose total is at or below `score`
+    public synchronized double percentile(int score) {
+        if (count == 0) return 0;
+        return score < 0 ? 0 : 100.0 * atMost(score) / count;
+    }
+
+    // A k below 1 yields an empty list
+    public synchronized List<Student> top(int k) {
+        k = Math.max(k, 0);
+        List<Student> out = new ArrayList<>(Math.min(k, (int) Math.min(count, Integer.MAX_VALUE)));
+        for (int score = byScore.length - 1; score >= 0 && out.size() < k; score--) {
+            for (int i = 0; i < bucketSize[score] && out.size() < k; i++) out.add(byScore[score][i]);
+        }
+        return out;
+    }
+}
+
+class SubjectStats {
+    static final int[] PERCENTILES = {25, 50, 75, 90, 99};
+
+    final int subject, count, min, max;
+    final double mean, stdDev, passRate;
+    final int[] percentiles;
+
+    SubjectStats(int subject, int count, double mean, int min, int max, double stdDev, double passRate, int[] percentiles) {
+        this.subject = subject;
+        this.count = count;
+        this.mean = mean;
+        this.min = min;
+        this.max = max;
+        this.stdDev = stdDev;
+        this.passRate = passRate;
+        this.percentiles = percentiles;
+    }
+
+    public void display() {
+        System.out.printf("Subject %d: n=%d mean=%.2f min=%d max=%d sd=%.2f pass=%.1f%%%n",
+                subject + 1, count, mean, min, max, stdDev, passRate * 100);
+        StringBuilder sb = new StringBuilder("  Percentiles:");
+        for (int k = 0; k < PERCENTILES.length; k++) sb.append(" p").append(PERCENTILES[k]).append('=').append(percentiles[k]);
+        System.out.println(sb);
+    }
+
+    // Sequential vs parallel aggregation over a synthetic cohort
+    public static void benchmark(int students) {
+        MarksTable table = new MarksTable(3);
+        Random rnd = new Random(7);
+        int[] m = new int[3];
+        for (int i = 0; i < students; i++) {
+            for (int s = 0; s < 3; s++) m[s] = rnd.nextInt(101);
+            table.append(m, 0);
+        }
+        for (boolean parallel : new boolean[] {false, true}) {
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < 10; round++) {
+                long start = System.nanoTime();
+                table.stats(parallel);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("students=%d parallel=%s all-subject stats ms=%.2f%n", students, parallel, best);
+        }
+    }
+}
+
+// Open-addressing hash table keyed by roll number; an empty slot has a null student
+class StudentStore {
+    private int[] rolls = new int[16];
+    private Student[] students = new Student[16];
+    private int count = 0;
+
+    private static int slot(int roll, int mask) {
+        int h = roll * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    public Student get(int roll) {
+        int mask = rolls.length - 1;
+        for (int i = slot(roll, mask); students[i] != null; i = (i + 1) & mask) {
+            if (rolls[i] == roll) return students[i];
+        }
+        return null;
+    }
+
+    public boolean contains(int roll) { return get(roll) != null; }
+
+    // Returns false without storing anything if the roll number is taken
+    public boolean add(Student s) {
+        int mask = rolls.length - 1;
+        int i = slot(s.getRoll(), mask);
+        for (; students[i] != null; i = (i + 1) & mask) {
+            if (rolls[i] == s.getRoll()) return false;
+        }
+        rolls[i] = s.getRoll();
+        students[i] = s;
+        if (++count * 4 > rolls.length * 3) resize();
+        return true;
+    }
+
+    private void resize() {
+        int[] oldRolls = rolls;
+        Student[] oldStudents = students;
+        rolls = new int[oldRolls.length * 2];
+        students = new Student[oldStudents.length * 2];
+        int mask = rolls.length - 1;
+        for (int j = 0; j < oldRolls.length; j++) {
+            if (oldStudents[j] == null) continue;
+            int i = slot(oldRolls[j], mask);
+            while (students[i] != null) i = (i + 1) & mask;
+            rolls[i] = oldRolls[j];
+            students[i] = oldStudents[j];
+        }
+    }
+
+    public int size() { return count; }
+
+    // Insert and random-lookup cost per student as the store grows to `max`
+    public static void benchmark(int max) throws InvalidMarksException {
+        int[] marks = {50, 60, 70};
+        Random rnd = new Random(42);
+        for (int n = 1_000; n <= max; n *= 10) {
+            StudentStore store = new StudentStore();
+            Student[] batch = new Student[n];
+            MarksTable table = new MarksTable(3);
+            for (int i = 0; i < n; i++) batch[i] = new Student(i * 7 + 1, "S" + i, marks, table);
+            long start = System.nanoTime();
+            for (Student st : batch) store.add(st);
+            double insertNs = (System.nanoTime() - start) / (double) n;
+            int[] keys = new int[1 << 20];
+            for (int i = 0; i < keys.length; i++) keys[i] = rnd.nextInt(n) * 7 + 1;
+            long sink = 0;
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < 5; round++) {
+                start = System.nanoTime();
+                for (int k : keys) sink += store.get(k).getRoll();
+                best = Math.min(best, (System.nanoTime() - start) / (double) keys.length);
+            }
+            System.out.printf("students=%d insert ns=%.1f lookup ns=%.1f (%d)%n", n, insertNs, best, sink & 1);
+        }
+    }
+}
+
+/*
+ * On-disk results, memory-mapped so a restart only maps the files back in:
+ *   results.dat   header, then fixed-width records {roll, name offset, name length, marks}
+ *   results.names UTF-8 name heap, addressed by the records
+ *   results.idx   open-addressing table of {roll, record + 1}; 0 marks an empty slot
+ * A record becomes durable when publish() moves the header count past it, after the
+ * record and its name are forced to disk. The index is derived from the records: it is
+ * rebuilt beside the live one and moved over it, and rebuilt on open if it does not
+ * cover the records. An index slot is trusted only if its record holds the same roll.
+ */
+class ResultsFile implements Closeable {
+    static final int MAGIC = 0x53524553; // "SRES"
+    static final int VERSION = 1;
+    static final int HEADER = 64;
+    private static final int COUNT_AT = 12, NAMES_END_AT = 16;
+
+    private final FileChannel data, names;
+    private FileChannel index;
+    private final File indexFile;
+    private final int subjects, recordSize;
+    private MappedByteBuffer dataMap, namesMap, indexMap;
+    private int count, slots;
+    private long namesEnd;
+    // What the header on disk covers
+    private int published;
+    private long publishedNames;
+
+    private ResultsFile(File dir, int subjects) throws IOException {
+        dir.mkdirs();
+        data = FileChannel.open(new File(dir, "results.dat").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        names = FileChannel.open(new File(dir, "results.names").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexFile = new File(dir, "results.idx");
+        index = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = data.size() < HEADER;
+        if (!fresh) {
+            MappedByteBuffer h = data.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (h.getInt(0) != MAGIC || h.getInt(4) != VERSION) throw new IOException("Not a results file");
+            subjects = h.getInt(8);
+            count = h.getInt(COUNT_AT);
+            namesEnd = h.getLong(NAMES_END_AT);
+        }
+        published = count;
+        publishedNames = namesEnd;
+        this.subjects = subjects;
+        recordSize = 4 + 8 + 2 + subjects;
+        dataMap = data.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(data.size(), HEADER + 1024L * recordSize));
+        namesMap = names.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(names.size(), 1 << 16));
+        slots = index.size() >= 8 * 1024 ? Integer.highestOneBit((int) (index.size() / 8)) : 1024;
+        indexMap = index.map(FileChannel.MapMode.READ_WRITE, 0, 8L * slots);
+        if (fresh) {
+            dataMap.putInt(0, MAGIC);
+            dataMap.putInt(4, VERSION);
+            dataMap.putInt(8, subjects);
+            dataMap.putInt(COUNT_AT, 0);
+            dataMap.putLong(NAMES_END_AT, 0);
+        }
+        // Too full, or missing the newest record, means the index is stale or was lost
+        if (count > 0 && (count * 4L > slots * 3L || find(roll(count - 1)) != count - 1)) {
+            int n = slots;
+            while (count * 4L > n * 3L) n *= 2;
+            rebuildIndex(n);
+        }
+    }
+
+    // An existing store keeps the subject count it was created with
+    public static ResultsFile open(File dir, int subjects) throws IOException {
+        return new ResultsFile(dir, subjects);
+    }
+
+    public int subjects() { return subjects; }
+    public int size() { return count; }
+
+    private static int slot(int roll, int mask) {
+        int h = roll * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // Record number for a roll, or -1
+    public int find(int roll) {
+        int mask = slots - 1;
+        for (int i = slot(roll, mask); ; i = (i + 1) & mask) {
+            int rec = indexMap.getInt(i * 8 + 4) - 1;
+            if (rec < 0) return -1;
+            // A slot can outlive a record lost in a crash and point at its replacement
+            if (indexMap.getInt(i * 8) == roll) return rec < count && roll(rec) == roll ? rec : -1;
+        }
+    }
+
+    public boolean contains(int roll) { return find(roll) >= 0; }
+
+    private int at(int rec) { return HEADER + rec * recordSize; }
+
+    public int roll(int rec) { return dataMap.getInt(at(rec)); }
+    public int mark(int rec, int subject) { return dataMap.get(at(rec) + 14 + subject); }
+
+    public String name(int rec) {
+        int off = (int) dataMap.getLong(at(rec) + 4);
+        byte[] b = new byte[dataMap.getShort(at(rec) + 12) & 0xFFFF];
+        for (int i = 0; i < b.length; i++) b[i] = namesMap.get(off + i);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // Caller has already validated the marks and checked the roll is new. The record is
+    // visible to this process at once; publish() makes it survive a crash.
+    public int append(int roll, String name, int[] marks, int off) throws IOException {
+        byte[] nb = name.getBytes(StandardCharsets.UTF_8);
+        if (nb.length > 0xFFFF) nb = Arrays.copyOf(nb, 0xFFFF);
+        if (namesEnd + nb.length > namesMap.capacity()) {
+            namesMap = names.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(namesEnd + nb.length, 2L * namesMap.capacity()));
+        }
+        for (int i = 0; i < nb.length; i++) namesMap.put((int) namesEnd + i, nb[i]);
+        int rec = count;
+        if (at(rec + 1) > dataMap.capacity()) {
+            dataMap = data.map(FileChannel.MapMode.READ_WRITE, 0, 2L * dataMap.capacity());
+        }
+        int p = at(rec);
+        dataMap.putInt(p, roll);
+        dataMap.putLong(p + 4, namesEnd);
+        dataMap.putShort(p + 12, (short) nb.length);
+        for (int s = 0; s < subjects; s++) dataMap.put(p + 14 + s, (byte) marks[off + s]);
+        if ((rec + 1) * 4L > slots * 3L) rebuildIndex(slots * 2);
+        insert(indexMap, slots, roll, rec);
+        namesEnd += nb.length;
+        count++;
+        return rec;
+    }
+
+    // Forces the new records and names out before the header count that covers them, so
+    // a crash never leaves the count past a record that was not written
+    public void publish() {
+        if (published == count) return;
+        namesMap.force((int) publishedNames, (int) (namesEnd - publishedNames));
+        dataMap.force(at(published), (count - published) * recordSize);
+        dataMap.putLong(NAMES_END_AT, namesEnd);
+        dataMap.putInt(COUNT_AT, count);
+        dataMap.force(0, HEADER);
+        published = count;
+        publishedNames = namesEnd;
+    }
+
+    private static void insert(MappedByteBuffer map, int slots, int roll, int rec) {
+        int mask = slots - 1;
+        int i = slot(roll, mask);
+        while (map.getInt(i * 8 + 4) != 0 && map.getInt(i * 8) != roll) i = (i + 1) & mask;
+        map.putInt(i * 8, roll);
+        map.putInt(i * 8 + 4, rec + 1);
+    }
+
+    // Rebuilt from the records, which are the source of truth, into a side file that
+    // replaces the live index in one move; a crash leaves one whole index or the other
+    private void rebuildIndex(int newSlots) throws IOException {
+        Path tmp = new File(indexFile.getPath() + ".tmp").toPath();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, 8L * newSlots);
+            for (int rec = 0; rec < count; rec++) insert(map, newSlots, roll(rec), rec);
+            map.force();
+        }
+        index.close();
+        Files.move(tmp, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexMap = index.map(FileChannel.MapMode.READ_WRITE, 0, 8L * newSlots);
+        slots = newSlots;
+    }
+
+    public boolean display(int roll) {
+        int rec = find(roll);
+        if (rec < 0) return false;
+        System.out.println("Roll Number: " + roll);
+        System.out.println("Student Name: " + name(rec));
+        StringBuilder sb = new StringBuilder("Marks:");
+        int total = 0;
+        for (int s = 0; s < subjects; s++) {
+            sb.append(' ').append(mark(rec, s));
+            total += mark(rec, s);
+        }
+        System.out.println(sb);
+        double avg = total / (double) subjects;
+        System.out.println("Average: " + avg);
+        System.out.println("Result: " + (avg >= MarksTable.PASS_MARK ? "Pass" : "Fail"));
+        return true;
+    }
+
+    public void flush() {
+        publish();
+        dataMap.force();
+        namesMap.force();
+        indexMap.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        data.close();
+        names.close();
+        index.close();
+    }
+}
+
+/*
+ * Bulk loader for marks files with lines of "roll,name,mark1,...,markN". Chunks of lines
+ * are parsed and validated in parallel into flat arrays; failures become a status code
+ * per row instead of an exception, and are reported with their line numbers.
+ */
+class ResultIngest {
+    static final int CHUNK = 1 << 16;
+    static final int LEAF = 4096;
+    static final int MAX_ERRORS = 20;
+    static final byte OK = 0, BAD_FORMAT = 1, BAD_MARK = 2, DUPLICATE = 3;
+
+    long rows, added, rejected;
+    double seconds;
+    List<String> errors = new ArrayList<>();
+
+    void reject(long line, String why) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) errors.add("line " + line + ": " + why);
+    }
+
+    void display() {
+        System.out.printf("Added %d of %d rows in %.2fs (%.0f rows/sec), %d rejected.%n",
+                added, rows, seconds, rows / Math.max(seconds, 1e-9), rejected);
+        for (String e : errors) System.out.println("  " + e);
+        if (rejected > errors.size()) System.out.println("  ...");
+    }
+
+    // Parsed form of one chunk; row i's marks sit at marks[i * subjects ...]
+    static final class Chunk {
+        final String[] lines;
+        final int n, subjects;
+        final int[] rolls;
+        final String[] names;
+        final int[] marks;
+        final byte[] status;
+        final int[] badSubject;
+
+        Chunk(String[] lines, int n, int subjects) {
+            this.lines = lines;
+            this.n = n;
+            this.subjects = subjects;
+            rolls = new int[n];
+            names = new String[n];
+            marks = new int[n * subjects];
+            status = new byte[n];
+            badSubject = new int[n];
+        }
+
+        void parse(int i) {
+            String line = lines[i];
+            int pos = 0, field = 0, fields = subjects + 2;
+            while (field < fields) {
+                int end = line.indexOf(',', pos);
+                if (end < 0) end = line.length();
+                if (field == 1) {
+                    names[i] = line.substring(pos, end).trim();
+                } else {
+                    int v = parseInt(line, pos, end);
+                    if (v == Integer.MIN_VALUE) {
+                        status[i] = BAD_FORMAT;
+                        return;
+                    }
+                    if (field == 0) rolls[i] = v;
+                    else marks[i * subjects + field - 2] = v;
+                }
+                field++;
+                pos = end + 1;
+                if (end == line.length()) break;
+            }
+            if (field != fields || pos <= line.length() || names[i].isEmpty()) {
+                status[i] = BAD_FORMAT;
+                return;
+            }
+            int bad = Student.invalidSubject(marks, i * subjects, subjects);
+            if (bad >= 0) {
+                status[i] = BAD_MARK;
+                badSubject[i] = bad;
+            }
+        }
+
+        // Integer.MIN_VALUE for anything that is not an optionally signed decimal int
+        static int parseInt(String s, int from, int to) {
+            while (from < to && s.charAt(from) == ' ') from++;
+            while (to > from && s.charAt(to - 1) == ' ') to--;
+            boolean neg = from < to && s.charAt(from) == '-';
+            if (neg) from++;
+            if (from == to || to - from > 9) return Integer.MIN_VALUE;
+            int v = 0;
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') return Integer.MIN_VALUE;
+                v = v * 10 + (c - '0');
+            }
+            return neg ? -v : v;
+        }
+
+        String error(int i) {
+            if (status[i] == BAD_MARK) {
+                int s = badSubject[i];
+                return "Invalid marks for subject " + (s + 1) + ": " + marks[i * subjects + s];
+            }
+            if (status[i] == DUPLICATE) return "Roll number " + rolls[i] + " already exists";
+            return "expected roll,name and " + subjects + " marks";
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ParseTask extends RecursiveAction {
+        final Chunk chunk;
+        final int from, to;
+
+        ParseTask(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF) {
+                for (int i = from; i < to; i++) chunk.parse(i);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParseTask(chunk, from, mid), new ParseTask(chunk, mid, to));
+        }
+    }
+}
+
+class ResultManager {
+    private StudentStore list = new StudentStore();
+    private MarksTable marks;
+    private RankIndex ranks;
+    // Durable copy of every student; the in-memory structures mirror it once hydrated
+    private ResultsFile store;
+    private boolean hydrated;
+    Scanner sc = new Scanner(System.in);
+
+    public ResultManager() throws IOException { this(3); }
+
+    public ResultManager(int subjects) throws IOException {
+        this(new File("results-data"), subjects);
+    }
+
+    public ResultManager(File dir, int subjects) throws IOException {
+        store = ResultsFile.open(dir, subjects);
+        if (store.subjects() != subjects) {
+            System.out.println("Using " + store.subjects() + " subjects from existing results.");
+        }
+        marks = new MarksTable(store.subjects());
+        ranks = new RankIndex(100 * store.subjects());
+    }
+
+    // Statistics and ranks are built on first use, so opening stays independent of the
+    // cohort size; every append after that updates them in place
+    private void hydrate() {
+        if (hydrated) return;
+        hydrated = true;
+        int subjects = store.subjects();
+        int[] m = new int[subjects];
+        for (int rec = 0; rec < store.size(); rec++) {
+            for (int s = 0; s < subjects; s++) m[s] = store.mark(rec, s);
+            remember(store.roll(rec), store.name(rec), m, 0);
+        }
+    }
+
+    private void remember(int roll, String name, int[] m, int off) {
+        int row = marks.append(m, off);
+        Student s = new Student(roll, name, marks, row);
+        list.add(s);
+        ranks.add(s, marks.total(row));
+    }
+
+    // Parsing and validation run in parallel per chunk; inserts stay on this thread
+    public ResultIngest ingest(File file) throws IOException {
+        ResultIngest report = new ResultIngest();
+        int subjects = marks.subjects();
+        long start = System.nanoTime();
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            long lineNo = 0;
+            String[] lines = new String[ResultIngest.CHUNK];
+            long[] lineNos = new long[ResultIngest.CHUNK];
+            while (true) {
+                int n = 0;
+                String line;
+                while (n < lines.length && (line = br.readLine()) != null) {
+                    lineNo++;
+                    if (line.isEmpty()) continue;
+                    lineNos[n] = lineNo;
+                    lines[n++] = line;
+                }
+                if (n == 0) break;
+                ResultIngest.Chunk chunk = new ResultIngest.Chunk(lines, n, subjects);
+                ForkJoinPool.commonPool().invoke(new ResultIngest.ParseTask(chunk, 0, n));
+                for (int i = 0; i < n; i++) {
+                    if (chunk.status[i] == ResultIngest.OK && store.contains(chunk.rolls[i])) {
+                        chunk.status[i] = ResultIngest.DUPLICATE;
+                    }
+                    if (chunk.status[i] != ResultIngest.OK) {
+                        report.reject(lineNos[i], chunk.error(i));
+                        continue;
+                    }
+                    store.append(chunk.rolls[i], chunk.names[i], chunk.marks, i * subjects);
+                    if (hydrated) remember(chunk.rolls[i], chunk.names[i], chunk.marks, i * subjects);
+                    report.added++;
+                }
+                store.publish();
+                report.rows += n;
+            }
+        }
+        report.seconds = (System.nanoTime() - start) / 1e9;
+        return report;
+    }
+
+    public void addStudent() {
+        try {
+            System.out.print("Enter Roll Number: ");
+            int r = sc.nextInt(); sc.nextLine();
+            if (store.contains(r)) {
+                System.out.println("Error: Roll number " + r + " already exists.");
+                return;
+            }
+
+            System.out.print("Enter Student Name: ");
+            String n = sc.nextLine();
+
+            int[] m = new int[marks.subjects()];
+            for (int i = 0; i < m.length; i++) {
+                System.out.print("Enter marks for subject " + (i + 1) + ": ");
+                m[i] = sc.nextInt();
+            }
+
+            Student.validate(m, marks.subjects());
+            store.append(r, n, m, 0);
+            store.publish();
+            if (hydrated) remember(r, n, m, 0);
+            System.out.println("Student added successfully. Returning to main menu...");
+
+        } catch (InvalidMarksException | IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (InputMismatchException e) {
+            System.out.println("Error: Invalid input.");
+            sc.nextLine();
+        }
+    }
+
+    public void showStudent() {
+        try {
+            System.out.print("Enter Roll Number to search: ");
+            int r = sc.nextInt();
+
+            // Served straight from the mapped file, without loading the cohort
+            if (store.display(r)) {
+                System.out.println("Search completed.");
+                return;
+            }
+            System.out.println("Student not found.");
+
+        } catch (InputMismatchException e) {
+            System.out.println("Error: Invalid roll number.");
+            sc.nextLine();
+        }
+    }
+
+    public void showStatistics() {
+        hydrate();
+        if (marks.rows() == 0) {
+            System.out.println("No students yet.");
+            return;
+        }
+        for (SubjectStats st : marks.stats(true)) st.display();
+    }
+
+    public void showRank() {
+        try {
+            System.out.print("Enter Roll Number: ");
+            int r = sc.nextInt();
+            hydrate();
+            Student s = list.get(r);
+            if (s == null) {
+                System.out.println("Student not found.");
+                return;
+            }
+            int total = marks.total(s.getRow());
+            System.out.printf("Total: %d  Rank: %d of %d  Percentile: %.1f%n",
+                    total, ranks.rank(total), ranks.size(), ranks.percentile(total));
+        } catch (InputMismatchException e) {
+            System.out.println("Error: Invalid roll number.");
+            sc.nextLine();
+        }
+    }
+
+    public void showMeritList() {
+        try {
+            System.out.print("How many students: ");
+            int k = sc.nextInt();
+            if (k < 1) {
+                System.out.println("Error: Enter a positive number.");
+                return;
+            }
+            hydrate();
+            int shown = 0;
+            for (Student s : ranks.top(k)) {
+                int total = marks.total(s.getRow());
+                System.out.println((++shown) + ". Roll " + s.getRoll() + " | " + s.getName()
+                        + " | Total: " + total + " | Rank: " + ranks.rank(total));
+            }
+        } catch (InputMismatchException e) {
+            System.out.println("Error: Invalid number.");
+            sc.nextLine();
+        }
+    }
+
+    public void bulkImport() {
+        System.out.print("Marks file (roll,name,marks...): ");
+        sc.nextLine();
+        String path = sc.nextLine().trim();
+        try {
+            ingest(new File(path)).display();
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    public void menu() {
+        int choice = 0;
+        try {
+            while (choice != 7) {
+                System.out.println("\n===== Student Result Management System =====");
+                System.out.println("1. Add Student");
+                System.out.println("2. Show Student Details");
+                System.out.println("3. Class Statistics");
+                System.out.println("4. Student Rank");
+                System.out.println("5. Merit List");
+                System.out.println("6. Bulk Import");
+                System.out.println("7. Exit");
+                System.out.print("Enter your choice: ");
+                choice = sc.nextInt();
+
+                switch (choice) {
+                    case 1: addStudent(); break;
+                    case 2: showStudent(); break;
+                    case 3: showStatistics(); break;
+                    case 4: showRank(); break;
+                    case 5: showMeritList(); break;
+                    case 6: bulkImport(); break;
+                    case 7: System.out.println("Exiting program. Thank you!"); break;
+                    default: System.out.println("Invalid choice.");
+                }
+            }
+        } finally {
+            sc.close();
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.out.println("Error saving results: " + e.getMessage());
+            }
+            System.out.println("Scanner closed. Program terminated.");
+        }
+    }
+
+    // Time to reopen the manager and serve the first lookups, and separately the first
+    // rank or statistics query that loads the cohort, as the cohort grows to `max`
+    public static void benchmark(int max) throws IOException {
+        int[] m = {50, 60, 70};
+        for (int n = 1_000; n <= max; n *= 10) {
+            File dir = Files.createTempDirectory("results").toFile();
+            try (ResultsFile f = ResultsFile.open(dir, 3)) {
+                for (int i = 0; i < n; i++) f.append(i * 7 + 1, "Student " + i, m, 0);
+            }
+            double open = Double.MAX_VALUE, first = Double.MAX_VALUE;
+            long sink = 0;
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                ResultManager rm = new ResultManager(dir, 3);
+                try {
+                    for (int k = 0; k < 100; k++) sink += rm.store.find((k * 7919 % n) * 7 + 1);
+                    open = Math.min(open, (System.nanoTime() - start) / 1e6);
+                    start = System.nanoTime();
+                    rm.hydrate();
+                    sink += rm.ranks.size();
+                    first = Math.min(first, (System.nanoTime() - start) / 1e6);
+                } finally {
+                    rm.store.close();
+                }
+            }
+            System.out.printf("students=%d open+100 lookups ms=%.3f first rank query ms=%.3f (%d)%n",
+                    n, open, first, sink & 1);
+            for (File f : dir.listFiles()) f.delete();
+            dir.delete();
+        }
+    }
+}
+
+public class StudentManagement {
+    public static void main(String[] args) throws InvalidMarksException, IOException {
+        if (args.length > 1 && args[0].equals("bench")) {
+            switch (args[1]) {
+                case "store": StudentStore.benchmark(1_000_000); break;
+                case "stats": SubjectStats.benchmark(1_000_000); break;
+                case "restart": ResultManager.benchmark(1_000_000); break;
+                default: System.out.println("Unknown benchmark: " + args[1]);
+            }
+            return;
+        }
+        // An optional first argument sets the number of subjects per student
+        int subjects = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        new ResultManager(subjects).menu();
+    }
+}
\ No newline at end of file